@@ -0,0 +1,241 @@
+package com.example.tpdlq.benchmark;
+
+import com.example.tpdlq.model.IngestResult;
+import com.example.tpdlq.model.IngestSettings;
+import com.example.tpdlq.service.FileProducerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs {@link FileProducerService} ingestion over a grid of reader buffer sizes, parallelism levels and
+ * batch sizes against the in-memory transport, logs throughput, allocation rate and p99 send latency
+ * per configuration and recommends {@code ingest.*} settings for this machine.
+ * <p>
+ * Start with {@code java -jar tp-dlq.jar --spring.profiles.active=benchmark} (optionally
+ * {@code --benchmark.files=orders_in.jsonl}). The recommendation is the fastest configuration, or among
+ * those within 5% of it, the one with the lowest p99.
+ */
+@Component
+@Profile("benchmark")
+public class IngestBenchmarkRunner implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestBenchmarkRunner.class);
+
+    private static final double NEAR_BEST = 0.95;
+    private static final long ALLOCATION_SAMPLE_MS = 20;
+
+    private final FileProducerService fileProducerService;
+    private final ApplicationContext context;
+
+    @Value("${benchmark.files:}")
+    private List<String> files = List.of();
+
+    @Value("${benchmark.synthetic.lines:200000}")
+    private long syntheticLines = 200_000;
+
+    @Value("${benchmark.synthetic.malformed:0.02}")
+    private double malformed = 0.02;
+
+    @Value("${benchmark.synthetic.invalid:0.05}")
+    private double invalid = 0.05;
+
+    @Value("${benchmark.synthetic.extra-fields:0.10}")
+    private double extraFields = 0.10;
+
+    @Value("${benchmark.min-lines:100000}")
+    private long minLines = 100_000;
+
+    @Value("${benchmark.grid.reader-buffers:8192,65536}")
+    private List<Integer> readerBuffers = List.of(8192, 65536);
+
+    @Value("${benchmark.grid.parallelism:1,2,4}")
+    private List<Integer> parallelismLevels = List.of(1, 2, 4);
+
+    @Value("${benchmark.grid.batch-sizes:1,100,1000}")
+    private List<Integer> batchSizes = List.of(1, 100, 1000);
+
+    @Value("${benchmark.warmup-runs:1}")
+    private int warmupRuns = 1;
+
+    @Value("${benchmark.exit:true}")
+    private boolean exit = true;
+
+    public IngestBenchmarkRunner(FileProducerService fileProducerService, ApplicationContext context) {
+        this.fileProducerService = fileProducerService;
+        this.context = context;
+    }
+
+    /**
+     * One measured grid point.
+     */
+    record Measurement(IngestSettings settings, IngestResult result, double allocatedMbPerSecond) {
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Path workDir = Files.createTempDirectory("tpdlq-bench");
+        try {
+            for (Path input : inputs(workDir)) {
+                List<Measurement> measurements = runGrid(input);
+                report(input, measurements);
+            }
+        } finally {
+            try (var paths = Files.list(workDir)) {
+                for (Path p : (Iterable<Path>) paths::iterator) {
+                    Files.deleteIfExists(p);
+                }
+            }
+            Files.deleteIfExists(workDir);
+        }
+        if (exit) {
+            // Closing the context stops the remaining non-daemon threads; the benchmark profile runs
+            // without a web server, so the JVM then ends on its own
+            SpringApplication.exit(context);
+        }
+    }
+
+    private List<Path> inputs(Path workDir) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        List<String> configured = files.stream().map(String::trim).filter(f -> !f.isEmpty()).toList();
+        if (configured.isEmpty()) {
+            logger.info("Generating {} synthetic lines (malformed={}, invalid={}, extra-fields={})",
+                    syntheticLines, malformed, invalid, extraFields);
+            inputs.add(SyntheticOrderFile.generate(workDir.resolve("synthetic.jsonl"), syntheticLines,
+                    malformed, invalid, extraFields));
+            return inputs;
+        }
+        for (String file : configured) {
+            Path source = Path.of(file);
+            inputs.add(SyntheticOrderFile.repeatToAtLeast(source,
+                    workDir.resolve(source.getFileName() + ".repeated"), minLines));
+        }
+        return inputs;
+    }
+
+    private List<Measurement> runGrid(Path input) throws InterruptedException {
+        List<Measurement> measurements = new ArrayList<>();
+        for (int buffer : readerBuffers) {
+            for (int parallelism : parallelismLevels) {
+                for (int batch : batchSizes) {
+                    IngestSettings settings = new IngestSettings(buffer, parallelism, batch);
+                    for (int i = 0; i < warmupRuns; i++) {
+                        fileProducerService.processJsonlFile(input.toString(), settings);
+                    }
+                    AllocationSampler sampler = AllocationSampler.start(ALLOCATION_SAMPLE_MS);
+                    IngestResult result = fileProducerService.processJsonlFile(input.toString(), settings);
+                    long allocated = sampler.finish();
+                    double seconds = result.elapsedNanos() / 1e9;
+                    measurements.add(new Measurement(settings, result,
+                            seconds == 0 ? 0.0 : allocated / seconds / (1024 * 1024)));
+                }
+            }
+        }
+        return measurements;
+    }
+
+    static Measurement recommend(List<Measurement> measurements) {
+        double best = measurements.stream().mapToDouble(m -> m.result().linesPerSecond()).max().orElse(0.0);
+        return measurements.stream()
+                .filter(m -> m.result().linesPerSecond() >= best * NEAR_BEST)
+                .min(Comparator.comparingDouble((Measurement m) -> m.result().p99SendMillis())
+                        .thenComparing(m -> -m.result().linesPerSecond()))
+                .orElseThrow();
+    }
+
+    private void report(Path input, List<Measurement> measurements) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Ingest benchmark: %s (%d lines, %d skipped)%n", input.getFileName(),
+                measurements.get(0).result().totalLines(), measurements.get(0).result().skippedLines()));
+        out.append(String.format("%-8s %-11s %-6s %12s %12s %10s %7s%n",
+                "buffer", "parallelism", "batch", "lines/s", "alloc MB/s", "p99 ms", "failed"));
+        for (Measurement m : measurements) {
+            out.append(String.format("%-8d %-11d %-6d %12.0f %12.1f %10.3f %7d%n",
+                    m.settings().readerBufferBytes(), m.settings().parallelism(), m.settings().batchSize(),
+                    m.result().linesPerSecond(), m.allocatedMbPerSecond(), m.result().p99SendMillis(),
+                    m.result().failedSends()));
+        }
+        IngestSettings best = recommend(measurements).settings();
+        out.append(String.format("Recommended for %d CPUs:%n", Runtime.getRuntime().availableProcessors()));
+        out.append("  ingest.reader-buffer-bytes=").append(best.readerBufferBytes()).append('\n');
+        out.append("  ingest.parallelism=").append(best.parallelism()).append('\n');
+        out.append("  ingest.batch-size=").append(best.batchSize());
+        logger.info("{}", out);
+    }
+
+    /**
+     * Bytes allocated by all threads during a run. Threads are sampled periodically since pool threads
+     * end with the run; allocation after a thread's last sample is missed, so this is a lower bound.
+     */
+    private static final class AllocationSampler extends Thread {
+
+        private final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final Map<Long, Long> baseline = new HashMap<>();
+        private final Map<Long, Long> latest = new HashMap<>();
+        private final long intervalMs;
+        private volatile boolean running = true;
+
+        private AllocationSampler(long intervalMs) {
+            super("ingest-bench-alloc");
+            setDaemon(true);
+            this.intervalMs = intervalMs;
+            sample(baseline);
+        }
+
+        static AllocationSampler start(long intervalMs) {
+            AllocationSampler sampler = new AllocationSampler(intervalMs);
+            sampler.start();
+            return sampler;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                sample(latest);
+                try {
+                    Thread.sleep(intervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long finish() throws InterruptedException {
+            running = false;
+            interrupt();
+            join();
+            sample(latest);
+            long total = 0;
+            for (Map.Entry<Long, Long> e : latest.entrySet()) {
+                total += e.getValue() - baseline.getOrDefault(e.getKey(), 0L);
+            }
+            return total;
+        }
+
+        private void sample(Map<Long, Long> into) {
+            long[] ids = threads.getAllThreadIds();
+            long[] bytes = threads.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] >= 0 && ids[i] != getId()) {
+                    into.merge(ids[i], bytes[i], Math::max);
+                }
+            }
+        }
+    }
+}
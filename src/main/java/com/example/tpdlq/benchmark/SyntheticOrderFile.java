@@ -0,0 +1,85 @@
+package com.example.tpdlq.benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Writes JSONL order files for the ingest benchmark.
+ */
+final class SyntheticOrderFile {
+
+    private static final int USERS = 1000;
+
+    private SyntheticOrderFile() {
+    }
+
+    /**
+     * Writes {@code lines} orders; the given fractions of lines are malformed JSON, invalid orders
+     * (missing userId or negative amount) or orders with extra fields. Seeded, so reruns match.
+     */
+    static Path generate(Path file, long lines, double malformed, double invalid, double extraFields)
+            throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (long i = 1; i <= lines; i++) {
+                double roll = random.nextDouble();
+                String userId = "u" + random.nextInt(USERS);
+                double amount = random.nextInt(100_000) / 100.0;
+                String line;
+                if (roll < malformed) {
+                    line = "{\"orderId\":\"o" + i + "\",\"userId\":\"" + userId + "\",\"amount\":";
+                } else if (roll < malformed + invalid) {
+                    line = i % 2 == 0
+                            ? String.format(Locale.ROOT, "{\"orderId\":\"o%d\",\"amount\":%.2f}", i, amount)
+                            : String.format(Locale.ROOT, "{\"orderId\":\"o%d\",\"userId\":\"%s\",\"amount\":-%.2f}",
+                                    i, userId, amount);
+                } else if (roll < malformed + invalid + extraFields) {
+                    line = String.format(Locale.ROOT,
+                            "{\"orderId\":\"o%d\",\"userId\":\"%s\",\"amount\":%.2f,\"currency\":\"EUR\","
+                                    + "\"channel\":\"web\",\"items\":[{\"sku\":\"sku-%d\",\"qty\":%d}]}",
+                            i, userId, amount, random.nextInt(500), 1 + random.nextInt(5));
+                } else {
+                    line = String.format(Locale.ROOT, "{\"orderId\":\"o%d\",\"userId\":\"%s\",\"amount\":%.2f}",
+                            i, userId, amount);
+                }
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Repeats the source file into {@code target} until it holds at least {@code minLines} lines,
+     * so small sample files still give measurable runs.
+     *
+     * @return the source itself if it is already long enough
+     */
+    static Path repeatToAtLeast(Path source, Path target, long minLines) throws IOException {
+        long sourceLines;
+        try (var stream = Files.lines(source, StandardCharsets.UTF_8)) {
+            sourceLines = stream.count();
+        }
+        if (sourceLines == 0 || sourceLines >= minLines) {
+            return source;
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            for (long written = 0; written < minLines; written += sourceLines) {
+                try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+        return target;
+    }
+}
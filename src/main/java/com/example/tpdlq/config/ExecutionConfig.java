@@ -0,0 +1,54 @@
+package com.example.tpdlq.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for blocking background jobs (file ingestion, DLQ replay).
+ * <p>
+ * Virtual-thread mode is opt-in through {@code spring.threads.virtual.enabled=true} and only takes
+ * effect on a Java 21+ runtime. With it, Spring Boot also moves the Tomcat request threads, the
+ * Kafka listener containers and the {@code @Scheduled} jobs onto virtual threads.
+ */
+@Configuration
+public class ExecutionConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionConfig.class);
+
+    public ExecutionConfig(Environment environment) {
+        if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)
+                && !Threading.VIRTUAL.isActive(environment)) {
+            logger.warn("spring.threads.virtual.enabled=true requires Java 21+ (running {}); using platform threads",
+                    Runtime.version().feature());
+        }
+    }
+
+    @Bean(name = "jobExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public AsyncTaskExecutor virtualJobExecutor() {
+        logger.info("Background jobs run on virtual threads");
+        return new VirtualThreadTaskExecutor("job-vt-");
+    }
+
+    @Bean(name = "jobExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public AsyncTaskExecutor platformJobExecutor(@Value("${jobs.executor.threads:4}") int threads,
+                                                 @Value("${jobs.executor.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.tpdlq.config;
+
+import com.example.tpdlq.inmemory.InMemoryBroker;
+import com.example.tpdlq.inmemory.InMemoryKafkaTemplate;
+import com.example.tpdlq.inmemory.InMemoryListenerBridge;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+
+/**
+ * Replaces the Kafka transport with an in-process broker when the {@code inmemory} profile is active,
+ * so the app, integration tests and benchmarks run without ZooKeeper/Kafka.
+ */
+@Configuration
+@Profile("inmemory")
+public class InMemoryKafkaConfig {
+
+    @Bean
+    public InMemoryBroker inMemoryBroker(ObjectProvider<NewTopic> topics,
+                                         @Value("${inmemory.kafka.partition-capacity:65536}") int partitionCapacity,
+                                         @Value("${inmemory.kafka.max-block-ms:60000}") long maxBlockMs) {
+        InMemoryBroker broker = new InMemoryBroker(partitionCapacity, maxBlockMs);
+        topics.orderedStream().forEach(t -> broker.createTopic(t.name(), t.numPartitions()));
+        return broker;
+    }
+
+    @Bean
+    public KafkaTemplate<String, String> kafkaTemplate(InMemoryBroker broker) {
+        return new InMemoryKafkaTemplate(broker);
+    }
+
+    // Off for producer-only runs such as the ingest benchmark: with no consumer group the rings just overwrite
+    @Bean
+    @ConditionalOnProperty(name = "inmemory.kafka.listeners.enabled", havingValue = "true", matchIfMissing = true)
+    public InMemoryListenerBridge inMemoryListenerBridge(InMemoryBroker broker, KafkaListenerEndpointRegistry registry) {
+        return new InMemoryListenerBridge(broker, registry);
+    }
+}
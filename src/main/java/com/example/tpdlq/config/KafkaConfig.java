@@ -1,12 +1,21 @@
 package com.example.tpdlq.config;
 
+import com.example.tpdlq.consumer.MainConsumer;
+import com.example.tpdlq.service.TransactionBatcher;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ContainerCustomizer;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
 
 import java.util.Map;
 
@@ -15,13 +24,39 @@ import java.util.Map;
 public class KafkaConfig {
 
     @Bean
+    @Profile("!inmemory")
     public ProducerFactory<String, String> producerFactory(KafkaProperties kafkaProperties) {
         Map<String, Object> props = kafkaProperties.buildProducerProperties();
         return new DefaultKafkaProducerFactory<>(props);
     }
 
     @Bean
+    @Profile("!inmemory")
     public KafkaTemplate<String, String> kafkaTemplate(ProducerFactory<String, String> producerFactory) {
         return new KafkaTemplate<>(producerFactory);
     }
+
+    /**
+     * In transactional mode the input container never commits offsets itself: they are sent in the
+     * producer transaction by {@link TransactionBatcher}, which also flushes on idle and on revocation.
+     */
+    @Bean
+    @Profile("!inmemory")
+    @ConditionalOnProperty(name = "kafka.transactions.enabled", havingValue = "true")
+    public ContainerCustomizer<Object, Object, ConcurrentMessageListenerContainer<Object, Object>> transactionalInputContainer(
+            TransactionBatcher transactionBatcher,
+            @Value("${kafka.transactions.interval-ms:100}") long intervalMs) {
+        return container -> {
+            ContainerProperties properties = container.getContainerProperties();
+            // Every listener skips records of aborted transactions
+            properties.getKafkaConsumerProperties().setProperty(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+            if (!MainConsumer.LISTENER_ID.equals(container.getListenerId())) {
+                return;
+            }
+            properties.setAckMode(ContainerProperties.AckMode.MANUAL);
+            properties.getKafkaConsumerProperties().setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+            properties.setIdleEventInterval(intervalMs);
+            properties.setConsumerRebalanceListener(transactionBatcher.rebalanceListener());
+        };
+    }
 }
@@ -1,7 +1,9 @@
 package com.example.tpdlq.config;
 
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.TopicBuilder;
@@ -15,6 +17,12 @@ public class KafkaTopicConfig {
     @Value("${kafka.topic.dlq}")
     private String dlqTopic;
 
+    @Value("${kafka.topic.overflow:tp8-input-overflow}")
+    private String overflowTopic;
+
+    @Value("${dlq.lane.default.retention-ms:604800000}")
+    private long dlqRetentionMs;
+
     @Bean
     public NewTopic inputTopic() {
         return TopicBuilder.name(inputTopic)
@@ -28,6 +36,40 @@ public class KafkaTopicConfig {
         return TopicBuilder.name(dlqTopic)
                 .partitions(1)
                 .replicas(1)
+                .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(dlqRetentionMs))
+                .build();
+    }
+
+    @Bean
+    public NewTopic overflowTopic() {
+        return TopicBuilder.name(overflowTopic)
+                .partitions(1)
+                .replicas(1)
+                .build();
+    }
+
+    // One partition per listener thread so each lane's concurrency is actually used
+    @Bean
+    @ConditionalOnProperty(name = "dlq.lanes.enabled", havingValue = "true")
+    public NewTopic dlqRetryLaneTopic(@Value("${dlq.lane.retry.topic:tp8-dlq-retry}") String topic,
+                                      @Value("${dlq.lane.retry.concurrency:2}") int partitions,
+                                      @Value("${dlq.lane.retry.retention-ms:604800000}") long retentionMs) {
+        return TopicBuilder.name(topic)
+                .partitions(partitions)
+                .replicas(1)
+                .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(retentionMs))
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "dlq.lanes.enabled", havingValue = "true")
+    public NewTopic dlqGarbageLaneTopic(@Value("${dlq.lane.garbage.topic:tp8-dlq-garbage}") String topic,
+                                        @Value("${dlq.lane.garbage.concurrency:1}") int partitions,
+                                        @Value("${dlq.lane.garbage.retention-ms:86400000}") long retentionMs) {
+        return TopicBuilder.name(topic)
+                .partitions(partitions)
+                .replicas(1)
+                .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(retentionMs))
                 .build();
     }
 }
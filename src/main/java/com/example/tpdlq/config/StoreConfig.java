@@ -0,0 +1,20 @@
+package com.example.tpdlq.config;
+
+import com.example.tpdlq.model.PayloadCodec;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Shared state of the in-memory message stores.
+ * <p>
+ * The DLQ list and the valid message window compress their payloads with one {@link PayloadCodec},
+ * so its dictionary is trained on both and lives as long as the application context.
+ */
+@Configuration
+public class StoreConfig {
+
+    @Bean
+    public PayloadCodec payloadCodec() {
+        return new PayloadCodec();
+    }
+}
@@ -1,23 +1,52 @@
 package com.example.tpdlq.consumer;
 
+import com.example.tpdlq.model.DlqLane;
 import com.example.tpdlq.model.DlqMessage;
 import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.PayloadCodec;
+import com.example.tpdlq.service.DlqLanes;
+import com.example.tpdlq.service.PayloadFootprint;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.stereotype.Component;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
-public class DlqConsumer {
+public class DlqConsumer implements ConsumerSeekAware {
+
+    /**
+     * Consistent copy of the DLQ list and the next offset to read per partition.
+     */
+    public record State(List<DlqMessage> messages, Map<TopicPartition, Long> offsets) {
+    }
+
+    /**
+     * New state of an entry whose replay failed local validation.
+     *
+     * @param payload replacement payload (an edited message), or null to keep the stored one
+     */
+    public record ReplayFailure(String payload, String reason, ErrorCategory category) {
+    }
 
     private static final Logger logger = LoggerFactory.getLogger(DlqConsumer.class);
 
@@ -26,21 +55,72 @@ public class DlqConsumer {
     // Thread-safe list to store DLQ messages for display
     private final List<DlqMessage> dlqMessages = new CopyOnWriteArrayList<>();
 
+    // Next offset per partition covered by dlqMessages; updated together with the list under stateLock
+    private final Map<TopicPartition, Long> nextOffsets = new ConcurrentHashMap<>();
+    // Offsets restored from a snapshot, applied once when their partition is assigned
+    private final Map<TopicPartition, Long> seekOnAssign = new ConcurrentHashMap<>();
+    private final Object stateLock = new Object();
+    private final AtomicLong changeCount = new AtomicLong();
+    private final PayloadCodec payloadCodec;
+    private final PayloadFootprint footprint;
+
+    private final DlqLanes dlqLanes;
+    // Stored entries per lane, guarded by stateLock
+    private final Map<DlqLane, Integer> laneSizes = new EnumMap<>(DlqLane.class);
+    // Stored entries per category (null counted as UNKNOWN_ERROR), guarded by stateLock
+    private final Map<ErrorCategory, Integer> categorySizes = new EnumMap<>(ErrorCategory.class);
+
     private final Counter dlqCounter;
-    private final Counter validationCounter;
-    private final Counter malformedCounter;
-    private final Counter unknownCounter;
+    private final Map<ErrorCategory, Counter> categoryCounters = new EnumMap<>(ErrorCategory.class);
+    private final Map<DlqLane, Counter> evictedCounters = new EnumMap<>(DlqLane.class);
+    // Records received per lane since startup, sampled-out ones included
+    private final Map<DlqLane, AtomicLong> laneArrivals = new EnumMap<>(DlqLane.class);
 
-    public DlqConsumer(MeterRegistry meterRegistry) {
+    public DlqConsumer(MeterRegistry meterRegistry, DlqLanes dlqLanes, PayloadCodec payloadCodec) {
+        this.dlqLanes = dlqLanes;
+        this.payloadCodec = payloadCodec;
         this.dlqCounter = meterRegistry.counter("tpdlq_dlq_total");
-        this.validationCounter = meterRegistry.counter("tpdlq_dlq_category_total", "category", "VALIDATION_ERROR");
-        this.malformedCounter = meterRegistry.counter("tpdlq_dlq_category_total", "category", "MALFORMED_ERROR");
-        this.unknownCounter = meterRegistry.counter("tpdlq_dlq_category_total", "category", "UNKNOWN_ERROR");
+        for (ErrorCategory category : ErrorCategory.values()) {
+            categoryCounters.put(category, meterRegistry.counter("tpdlq_dlq_category_total", "category", category.name()));
+        }
+        for (DlqLane lane : DlqLane.values()) {
+            laneSizes.put(lane, 0);
+            laneArrivals.put(lane, new AtomicLong());
+            evictedCounters.put(lane, meterRegistry.counter("tpdlq_dlq_lane_evicted_total", "lane", lane.name()));
+        }
         meterRegistry.gaugeCollectionSize("tpdlq_dlq_backlog", List.of(), dlqMessages);
+        this.footprint = new PayloadFootprint("dlq", meterRegistry);
+    }
+
+    /**
+     * Default lane listener; with lanes disabled every DLQ record arrives here. The retry and
+     * garbage lane topics are consumed by {@link DlqLaneListeners}.
+     */
+    @KafkaListener(topics = "${kafka.topic.dlq}", groupId = "${spring.kafka.consumer.group-id}-dlq",
+            concurrency = "${dlq.lane.default.concurrency:1}")
+    public void consumeFromDlq(ConsumerRecord<String, String> record) {
+        TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+        ErrorCategory tagged = categoryHeader(record);
+        if (tagged != null && !dlqLanes.sample(DlqLane.of(tagged))) {
+            // Counted from the header alone: the payload is neither parsed nor stored
+            countCategory(tagged);
+            synchronized (stateLock) {
+                nextOffsets.put(tp, record.offset() + 1);
+            }
+            return;
+        }
+        DlqMessage dlqMessage = parse(record.value());
+        store(dlqMessage, tp, record.offset() + 1);
+        countCategory(dlqMessage.getCategory());
     }
 
-    @KafkaListener(topics = "${kafka.topic.dlq}", groupId = "${spring.kafka.consumer.group-id}-dlq")
     public void consumeFromDlq(String message) {
+        DlqMessage dlqMessage = parse(message);
+        store(dlqMessage, null, 0);
+        countCategory(dlqMessage.getCategory());
+    }
+
+    private DlqMessage parse(String message) {
         try {
             // Try to parse the DLQ message to extract reason, original message, and category
             JsonNode jsonNode = objectMapper.readTree(message);
@@ -65,22 +145,16 @@ public class DlqConsumer {
                         category, reason, originalMessage);
                 
                 // Store message for display
-                DlqMessage dlqMessage = new DlqMessage(reason, originalMessage, category);
-                dlqMessages.add(dlqMessage);
-                countCategory(category);
+                return new DlqMessage(reason, payloadCodec.compress(originalMessage), category);
             } else {
                 // Old format or plain message
                 logger.error("DLQ Consumer - Received error message: {}", message);
-                DlqMessage dlqMessage = new DlqMessage("Unknown", message, ErrorCategory.UNKNOWN_ERROR);
-                dlqMessages.add(dlqMessage);
-                countCategory(ErrorCategory.UNKNOWN_ERROR);
+                return new DlqMessage("Unknown", payloadCodec.compress(message), ErrorCategory.UNKNOWN_ERROR);
             }
         } catch (Exception e) {
             // If parsing fails, log as-is
             logger.error("DLQ Consumer - Received error message: {}", message);
-            DlqMessage dlqMessage = new DlqMessage("Parse Error", message, ErrorCategory.MALFORMED_ERROR);
-            dlqMessages.add(dlqMessage);
-            countCategory(ErrorCategory.MALFORMED_ERROR);
+            return new DlqMessage("Parse Error", payloadCodec.compress(message), ErrorCategory.MALFORMED_ERROR);
         }
         // Monitor and handle error messages from DLQ
         // This could involve alerting, manual review, or custom error handling
@@ -91,25 +165,229 @@ public class DlqConsumer {
         return new ArrayList<>(dlqMessages);
     }
 
+    /**
+     * @return an iterator over the list as it is now; it neither copies the list nor sees later changes
+     */
+    public Iterator<DlqMessage> iterator() {
+        return dlqMessages.iterator();
+    }
+
     public Optional<DlqMessage> findById(String id) {
         return dlqMessages.stream().filter(m -> m.getId().equals(id)).findFirst();
     }
 
     public boolean removeById(String id) {
-        return dlqMessages.removeIf(m -> m.getId().equals(id));
+        synchronized (stateLock) {
+            changeCount.incrementAndGet();
+            return dlqMessages.removeIf(m -> {
+                if (m.getId().equals(id)) {
+                    unaccount(m);
+                    return true;
+                }
+                return false;
+            });
+        }
     }
     
+    /**
+     * Applies the outcome of a replay: republished entries are removed and entries that still fail are
+     * replaced by a copy with the new reason, category and one more replay attempt. Entries evicted or
+     * removed meanwhile are skipped.
+     *
+     * @return the number of entries removed
+     */
+    public int applyReplay(Set<String> republished, Map<String, ReplayFailure> failures) {
+        if (republished.isEmpty() && failures.isEmpty()) {
+            return 0;
+        }
+        synchronized (stateLock) {
+            changeCount.incrementAndGet();
+            if (!failures.isEmpty()) {
+                // Entries are replaced, not updated: snapshots and exports iterate them without the lock
+                dlqMessages.replaceAll(message -> {
+                    ReplayFailure failure = failures.get(message.getId());
+                    if (failure == null) {
+                        return message;
+                    }
+                    // A new category may move the entry to another lane; that lane can exceed its capacity by the moved entries
+                    unaccount(message);
+                    DlqMessage updated = message.afterRejectedReplay(payloadCodec.compress(failure.payload()),
+                            failure.reason(), failure.category());
+                    footprint.added(updated.getPayload());
+                    account(updated);
+                    return updated;
+                });
+            }
+            int before = dlqMessages.size();
+            if (!republished.isEmpty()) {
+                // One removeIf: the copy-on-write list is copied once, not once per entry
+                dlqMessages.removeIf(m -> {
+                    if (republished.contains(m.getId())) {
+                        unaccount(m);
+                        return true;
+                    }
+                    return false;
+                });
+            }
+            return before - dlqMessages.size();
+        }
+    }
+
     // Method to clear DLQ messages (optional)
     public void clearDlqMessages() {
-        dlqMessages.clear();
+        synchronized (stateLock) {
+            changeCount.incrementAndGet();
+            dlqMessages.forEach(m -> footprint.removed(m.getPayload()));
+            dlqMessages.clear();
+            laneSizes.replaceAll((lane, size) -> 0);
+            categorySizes.clear();
+        }
+    }
+
+    public PayloadFootprint getFootprint() {
+        return footprint;
+    }
+
+    /**
+     * @return entries currently stored per category, kept as running counts
+     */
+    public Map<ErrorCategory, Integer> getCategorySizes() {
+        synchronized (stateLock) {
+            return new EnumMap<>(categorySizes);
+        }
+    }
+
+    /**
+     * @return the newest {@code limit} entries, oldest first, without copying the rest of the list
+     */
+    public List<DlqMessage> getRecent(int limit) {
+        synchronized (stateLock) {
+            int size = dlqMessages.size();
+            // Writers hold stateLock too, so the size cannot change under the sub-list
+            return new ArrayList<>(dlqMessages.subList(Math.max(0, size - limit), size));
+        }
+    }
+
+    /**
+     * @return entries currently stored for the lane, kept as a running count
+     */
+    public int getLaneSize(DlqLane lane) {
+        synchronized (stateLock) {
+            return laneSizes.get(lane);
+        }
+    }
+
+    /**
+     * @return records received for the lane since startup; unlike {@link #getLaneSize} it never goes down
+     */
+    public long getLaneArrivals(DlqLane lane) {
+        return laneArrivals.get(lane).get();
+    }
+
+    /**
+     * @return a counter that moves on every change to the DLQ list, to skip unchanged snapshots
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    public State captureState() {
+        synchronized (stateLock) {
+            return new State(new ArrayList<>(dlqMessages), Map.copyOf(nextOffsets));
+        }
+    }
+
+    /**
+     * Loads a snapshot before the listener starts. Assigned partitions are then positioned at the
+     * snapshot offsets, so only records newer than the snapshot are read again.
+     */
+    public void restoreState(State state) {
+        synchronized (stateLock) {
+            clearDlqMessages();
+            dlqMessages.addAll(state.messages());
+            for (DlqMessage m : state.messages()) {
+                footprint.added(m.getPayload());
+                account(m);
+            }
+            nextOffsets.clear();
+            nextOffsets.putAll(state.offsets());
+            seekOnAssign.putAll(state.offsets());
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        for (TopicPartition tp : assignments.keySet()) {
+            Long offset = seekOnAssign.remove(tp);
+            if (offset != null) {
+                logger.info("Seeking {} to snapshot offset {}", tp, offset);
+                callback.seek(tp.topic(), tp.partition(), offset);
+            }
+        }
+    }
+
+    /**
+     * Adds an entry, evicting the oldest entry of the same lane once the lane is at capacity, and
+     * records the offset it covers in the same step so snapshots stay consistent.
+     */
+    private void store(DlqMessage dlqMessage, TopicPartition tp, long nextOffset) {
+        DlqLane lane = DlqLane.of(dlqMessage.getCategory());
+        synchronized (stateLock) {
+            changeCount.incrementAndGet();
+            if (laneSizes.get(lane) >= dlqLanes.capacity(lane)) {
+                evictOldest(lane);
+            }
+            dlqMessages.add(dlqMessage);
+            footprint.added(dlqMessage.getPayload());
+            account(dlqMessage);
+            if (tp != null) {
+                nextOffsets.put(tp, nextOffset);
+            }
+        }
+    }
+
+    private void evictOldest(DlqLane lane) {
+        for (Iterator<DlqMessage> it = dlqMessages.iterator(); it.hasNext(); ) {
+            DlqMessage oldest = it.next();
+            if (DlqLane.of(oldest.getCategory()) == lane) {
+                dlqMessages.remove(oldest);
+                unaccount(oldest);
+                evictedCounters.get(lane).increment();
+                return;
+            }
+        }
+    }
+
+    private void unaccount(DlqMessage message) {
+        footprint.removed(message.getPayload());
+        laneSizes.merge(DlqLane.of(message.getCategory()), -1, Integer::sum);
+        categorySizes.merge(categoryKey(message), -1, Integer::sum);
+    }
+
+    private void account(DlqMessage message) {
+        laneSizes.merge(DlqLane.of(message.getCategory()), 1, Integer::sum);
+        categorySizes.merge(categoryKey(message), 1, Integer::sum);
+    }
+
+    private static ErrorCategory categoryKey(DlqMessage message) {
+        return message.getCategory() != null ? message.getCategory() : ErrorCategory.UNKNOWN_ERROR;
+    }
+
+    private static ErrorCategory categoryHeader(ConsumerRecord<String, String> record) {
+        Header header = record.headers().lastHeader(DlqLanes.CATEGORY_HEADER);
+        if (header == null) {
+            return null;
+        }
+        try {
+            return ErrorCategory.valueOf(new String(header.value(), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     private void countCategory(ErrorCategory category) {
         dlqCounter.increment();
-        switch (category) {
-            case VALIDATION_ERROR -> validationCounter.increment();
-            case MALFORMED_ERROR -> malformedCounter.increment();
-            default -> unknownCounter.increment();
-        }
+        categoryCounters.get(category).increment();
+        laneArrivals.get(DlqLane.of(category)).incrementAndGet();
     }
 }
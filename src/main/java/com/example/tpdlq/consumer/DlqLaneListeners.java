@@ -0,0 +1,43 @@
+package com.example.tpdlq.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Listeners for the retry and garbage DLQ lane topics, each with its own concurrency. Records are
+ * handed to {@link DlqConsumer}, which keeps one store and one set of offsets for all lanes.
+ */
+@Component
+@ConditionalOnProperty(name = "dlq.lanes.enabled", havingValue = "true")
+public class DlqLaneListeners implements ConsumerSeekAware {
+
+    private final DlqConsumer dlqConsumer;
+
+    public DlqLaneListeners(DlqConsumer dlqConsumer) {
+        this.dlqConsumer = dlqConsumer;
+    }
+
+    @KafkaListener(id = "dlqRetryLane", idIsGroup = false, topics = "${dlq.lane.retry.topic:tp8-dlq-retry}",
+            groupId = "${spring.kafka.consumer.group-id}-dlq", concurrency = "${dlq.lane.retry.concurrency:2}")
+    public void consumeRetryLane(ConsumerRecord<String, String> record) {
+        dlqConsumer.consumeFromDlq(record);
+    }
+
+    @KafkaListener(id = "dlqGarbageLane", idIsGroup = false, topics = "${dlq.lane.garbage.topic:tp8-dlq-garbage}",
+            groupId = "${spring.kafka.consumer.group-id}-dlq", concurrency = "${dlq.lane.garbage.concurrency:1}")
+    public void consumeGarbageLane(ConsumerRecord<String, String> record) {
+        dlqConsumer.consumeFromDlq(record);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        // Snapshot offsets are kept per partition, whichever lane topic it belongs to
+        dlqConsumer.onPartitionsAssigned(assignments, callback);
+    }
+}
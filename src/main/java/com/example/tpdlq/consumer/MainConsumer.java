@@ -2,86 +2,176 @@ package com.example.tpdlq.consumer;
 
 import com.example.tpdlq.model.ErrorCategory;
 import com.example.tpdlq.model.Order;
+import com.example.tpdlq.service.DashboardModel;
+import com.example.tpdlq.service.FairScheduler;
+import com.example.tpdlq.service.FlowController;
 import com.example.tpdlq.service.MessageProducerService;
+import com.example.tpdlq.service.OrderDeduplicator;
 import com.example.tpdlq.service.OrderValidator;
-import com.example.tpdlq.service.ValidMessageStore;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.tpdlq.service.ProcessingPipeline;
+import com.example.tpdlq.service.TransactionBatcher;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 
 @Component
 public class MainConsumer {
 
+    public static final String LISTENER_ID = "mainConsumer";
+    public static final String OVERFLOW_LISTENER_ID = "overflowConsumer";
+
     private static final Logger logger = LoggerFactory.getLogger(MainConsumer.class);
 
     private final MessageProducerService messageProducerService;
     private final OrderValidator orderValidator;
-    private final ValidMessageStore validMessageStore;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ProcessingPipeline processingPipeline;
+    private final OrderDeduplicator orderDeduplicator;
+    private final FlowController flowController;
+    private final FairScheduler fairScheduler;
+    private final DashboardModel dashboardModel;
+    private final TransactionBatcher transactionBatcher;
     private final Counter processedCounter;
     private final Counter validCounter;
     private final Counter invalidCounter;
     private final Counter malformedCounter;
+    private final Counter duplicateCounter;
 
     public MainConsumer(MessageProducerService messageProducerService,
                         OrderValidator orderValidator,
-                        ValidMessageStore validMessageStore,
+                        ProcessingPipeline processingPipeline,
+                        OrderDeduplicator orderDeduplicator,
+                        FlowController flowController,
+                        FairScheduler fairScheduler,
+                        DashboardModel dashboardModel,
+                        ObjectProvider<TransactionBatcher> transactionBatcher,
                         MeterRegistry meterRegistry) {
         this.messageProducerService = messageProducerService;
         this.orderValidator = orderValidator;
-        this.validMessageStore = validMessageStore;
+        this.processingPipeline = processingPipeline;
+        this.orderDeduplicator = orderDeduplicator;
+        this.flowController = flowController;
+        this.fairScheduler = fairScheduler;
+        this.dashboardModel = dashboardModel;
+        this.transactionBatcher = transactionBatcher.getIfAvailable();
         this.processedCounter = meterRegistry.counter("tpdlq_messages_processed_total");
         this.validCounter = meterRegistry.counter("tpdlq_messages_valid_total");
         this.invalidCounter = meterRegistry.counter("tpdlq_messages_invalid_total");
         this.malformedCounter = meterRegistry.counter("tpdlq_messages_malformed_total");
+        this.duplicateCounter = meterRegistry.counter("tpdlq_messages_duplicate_total");
     }
 
-    @KafkaListener(topics = "${kafka.topic.input}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consume(String message) {
-        logger.info("Received message from input topic: {}", message);
-        processedCounter.increment();
-        
+    @PostConstruct
+    void startFairScheduler() {
+        // Not from the constructor: the dispatcher threads must not see a partly constructed consumer
+        fairScheduler.start(this::process);
+    }
+
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false,
+            topics = "${kafka.topic.input}", groupId = "${spring.kafka.consumer.group-id}")
+    public void consume(ConsumerRecord<String, String> record,
+                        @Header(name = KafkaHeaders.CONSUMER, required = false) Consumer<?, ?> consumer) {
+        // No consumer with the in-memory transport, which has no transactions either
+        boolean transactional = transactionBatcher != null && consumer != null;
+        if (transactional && !transactionBatcher.begin(record, consumer)) {
+            // Rest of a poll whose transaction was aborted: delivered again after the rewound records
+            return;
+        }
         try {
-            // Try to parse as JSON
-            Order order = objectMapper.readValue(message, Order.class);
-            
-            // Validate the order
-            String validationError = orderValidator.validateOrder(order);
-            if (validationError != null) {
-                // Check if it's a malformed error (extra fields)
-                ErrorCategory category = validationError.contains("Malformed JSON: unexpected fields") 
-                    ? ErrorCategory.MALFORMED_ERROR 
-                    : ErrorCategory.VALIDATION_ERROR;
-                handleInvalidMessage(message, validationError, category);
+            String message = record.value();
+            if (fairScheduler.isEnabled()) {
+                // Processed later by a fair-scheduler dispatcher, or parked on the overflow topic
+                fairScheduler.submit(message);
             } else {
-                processValidMessage(message, order);
-                validCounter.increment();
+                process(message);
+            }
+            if (transactional) {
+                // DLQ records sent by process() and this offset commit together
+                transactionBatcher.complete(record, consumer);
             }
-        } catch (IllegalArgumentException e) {
-            logger.error("Validation error for message: {}", message, e);
-            messageProducerService.sendToDlqTopic(message, "Validation error: " + e.getMessage(), ErrorCategory.VALIDATION_ERROR);
-            invalidCounter.increment();
-        } catch (Exception e) {
-            logger.error("Error parsing message as JSON: {}", message, e);
+        } finally {
+            flowController.onRecordConsumed();
+        }
+    }
+
+    /**
+     * Drains records parked on the overflow topic by the fair scheduler. They are re-admitted at their
+     * user's rate while the scheduler has room, or processed directly if fair scheduling was turned off.
+     * A record that cannot be admitted yet is parked again and this container paused, never blocking here.
+     */
+    @KafkaListener(id = OVERFLOW_LISTENER_ID, idIsGroup = false,
+            topics = "${kafka.topic.overflow:tp8-input-overflow}", groupId = "${spring.kafka.consumer.group-id}-overflow")
+    public void consumeOverflow(ConsumerRecord<String, String> record) {
+        if (fairScheduler.isEnabled()) {
+            fairScheduler.resubmit(record.value());
+        } else {
+            process(record.value());
+        }
+    }
+
+    private void process(String message) {
+        logger.info("Received message from input topic: {}", message);
+        processedCounter.increment();
+        dashboardModel.record(DashboardModel.Event.PROCESSED);
+        
+        OrderValidator.Verdict verdict = orderValidator.check(message);
+        Order order = verdict.order();
+        if (order == null) {
+            logger.error("Error parsing message as JSON: {} ({})", message, verdict.reason());
             // Send malformed JSON to DLQ
-            messageProducerService.sendToDlqTopic(message, "Malformed JSON: " + e.getMessage(), ErrorCategory.MALFORMED_ERROR);
+            messageProducerService.sendToDlqTopic(message, verdict.reason(), ErrorCategory.MALFORMED_ERROR);
             malformedCounter.increment();
+            dashboardModel.record(DashboardModel.Event.MALFORMED);
+            return;
         }
+
+        if (!verdict.isValid()) {
+            // Never deduplicated: an invalid payload reusing an accepted orderId still belongs in the DLQ
+            handleInvalidMessage(message, verdict.reason(), verdict.category());
+            return;
+        }
+
+        // Replays and re-uploads resend the same orderId: skip it before the pipeline
+        if (orderDeduplicator.isDuplicate(order.getOrderId())) {
+            duplicateCounter.increment();
+            if (orderDeduplicator.getMode() == OrderDeduplicator.Mode.DROP) {
+                logger.info("Dropping duplicate order {}", order.getOrderId());
+                return;
+            }
+            logger.warn("Duplicate order {} flagged, processing again", order.getOrderId());
+        }
+        processValidMessage(message, order);
     }
 
     private void processValidMessage(String message, Order order) {
         logger.info("Processing valid order: {}", order);
-        // Business logic for valid messages would go here
-        validMessageStore.add(order, message);
+        // Enrichment, persistence and forwarding run asynchronously in the pipeline stages
+        // Read the id before submitting: the enrichment stage may rewrite it concurrently
+        String orderId = order.getOrderId();
+        // Marked up front so a duplicate arriving while this one is in flight is still caught;
+        // a stage failure sends the order to the DLQ and clears the mark so a replay is not dropped
+        orderDeduplicator.markProcessed(orderId);
+        if (processingPipeline.submit(order, message, () -> orderDeduplicator.forget(orderId))) {
+            validCounter.increment();
+            dashboardModel.record(DashboardModel.Event.VALID);
+        } else {
+            orderDeduplicator.forget(orderId);
+            messageProducerService.sendToDlqTopic(message, "Processing pipeline unavailable", ErrorCategory.UNKNOWN_ERROR);
+        }
     }
 
     private void handleInvalidMessage(String message, String reason, ErrorCategory category) {
         logger.warn("Invalid message detected: {}. Reason: {} (Category: {})", message, reason, category);
         messageProducerService.sendToDlqTopic(message, reason, category);
         invalidCounter.increment();
+        dashboardModel.record(DashboardModel.Event.INVALID);
     }
 }
@@ -0,0 +1,38 @@
+package com.example.tpdlq.controller;
+
+import com.example.tpdlq.model.UserAggregate;
+import com.example.tpdlq.service.WindowedAggregator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/aggregates")
+public class AggregateController {
+
+    @Autowired
+    private WindowedAggregator windowedAggregator;
+
+    // Per-user totals over the sliding window, highest total first
+    @GetMapping("/users")
+    public ResponseEntity<?> users(@RequestParam(defaultValue = "20") int top) {
+        if (top < 1) {
+            return ResponseEntity.badRequest().body("top must be at least 1");
+        }
+        return ResponseEntity.ok(windowedAggregator.slidingTotals(top));
+    }
+
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<UserAggregate> user(@PathVariable String userId) {
+        return ResponseEntity.ok(windowedAggregator.slidingTotal(userId));
+    }
+
+    // Open and recently closed tumbling windows, newest first
+    @GetMapping("/windows")
+    public ResponseEntity<?> windows(@RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1) {
+            return ResponseEntity.badRequest().body("limit must be at least 1");
+        }
+        return ResponseEntity.ok(windowedAggregator.tumblingWindows(limit));
+    }
+}
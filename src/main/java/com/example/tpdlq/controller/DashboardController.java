@@ -0,0 +1,26 @@
+package com.example.tpdlq.controller;
+
+import com.example.tpdlq.model.DashboardView;
+import com.example.tpdlq.service.DashboardModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+@RestController
+@RequestMapping("/api/dashboard")
+public class DashboardController {
+
+    @Autowired
+    private DashboardModel dashboardModel;
+
+    // Counters, DLQ breakdown and rates; pollers send If-None-Match and get 304 while nothing changed
+    @GetMapping
+    public ResponseEntity<DashboardView> dashboard(WebRequest request) {
+        DashboardModel.Snapshot snapshot = dashboardModel.current();
+        if (request.checkNotModified(snapshot.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(snapshot.etag()).body(snapshot.view());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.tpdlq.controller;
+
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.ExportFilter;
+import com.example.tpdlq.model.ExportResult;
+import com.example.tpdlq.service.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    @Autowired
+    private ExportService exportService;
+
+    // Streamed with chunked transfer encoding while entries are encoded; nothing is buffered in full
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> download(@RequestParam(defaultValue = "jsonl") String format,
+                                                          @RequestParam(required = false) List<String> category,
+                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                          @RequestParam(defaultValue = "false") boolean includeValid) {
+        ExportService.Format exportFormat;
+        ExportFilter filter;
+        try {
+            exportFormat = ExportService.Format.of(format);
+            filter = new ExportFilter(categories(category), from, to, includeValid);
+        } catch (IllegalArgumentException e) {
+            // Streaming handlers can only return a streamed body, so the error text is streamed too
+            byte[] error = ("Invalid export request: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(out -> out.write(error));
+        }
+        String fileName = "dlq-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))
+                + exportFormat.getExtension();
+        StreamingResponseBody body = out -> exportService.export(filter, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(GZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+    // Written below export.directory on the server, e.g. to hand a large backlog over out of band
+    @PostMapping("/file")
+    public ResponseEntity<?> toFile(@RequestParam(defaultValue = "jsonl") String format,
+                                    @RequestParam(required = false) List<String> category,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                    @RequestParam(defaultValue = "false") boolean includeValid,
+                                    @RequestParam(required = false) String name) {
+        try {
+            ExportResult result = exportService.exportToFile(
+                    new ExportFilter(categories(category), from, to, includeValid), ExportService.Format.of(format), name);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Invalid export request: " + e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("Export failed: " + e.getMessage());
+        }
+    }
+
+    private static Set<ErrorCategory> categories(List<String> names) {
+        Set<ErrorCategory> categories = EnumSet.noneOf(ErrorCategory.class);
+        if (names != null) {
+            for (String name : names) {
+                categories.add(ErrorCategory.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        return categories;
+    }
+}
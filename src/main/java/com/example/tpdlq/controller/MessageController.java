@@ -1,11 +1,26 @@
 package com.example.tpdlq.controller;
 
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.BulkIngestResult;
+import com.example.tpdlq.model.DlqMessage;
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.service.BulkIngestService;
+import com.example.tpdlq.service.DlqReplayService;
 import com.example.tpdlq.service.FileProducerService;
 import com.example.tpdlq.service.MessageProducerService;
+import com.example.tpdlq.service.PipelineHealthIndicator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/messages")
 public class MessageController {
@@ -16,12 +31,51 @@ public class MessageController {
     @Autowired
     private FileProducerService fileProducerService;
 
+    @Autowired
+    private BulkIngestService bulkIngestService;
+
+    @Autowired
+    private DlqReplayService dlqReplayService;
+
+    @Autowired
+    private DlqConsumer dlqConsumer;
+
+    @Autowired
+    private PipelineHealthIndicator pipelineHealth;
+
+    @Autowired
+    @Qualifier("jobExecutor")
+    private AsyncTaskExecutor jobExecutor;
+
     @PostMapping("/send")
     public ResponseEntity<String> sendMessage(@RequestBody String message) {
         messageProducerService.sendToInputTopic(message);
         return ResponseEntity.ok("Message sent to input topic: " + message);
     }
 
+    // NDJSON or a JSON array, parsed while the body is read and sent with pipelined async sends
+    @PostMapping("/bulk")
+    public ResponseEntity<?> sendBulk(InputStream body) {
+        try {
+            BulkIngestResult result = bulkIngestService.ingest(body);
+            return ResponseEntity.ok(result);
+        } catch (IOException e) {
+            return ResponseEntity.status(500)
+                    .body("Error reading request body: " + e.getMessage());
+        }
+    }
+
+    // Re-publishes the DLQ entries that pass validation now; dryRun only counts them
+    @PostMapping("/replay-dlq")
+    public ResponseEntity<?> replayDlq(@RequestParam(defaultValue = "false") boolean dryRun,
+                                       @RequestParam(required = false) ErrorCategory category) {
+        List<DlqMessage> candidates = dlqConsumer.getDlqMessages();
+        if (category != null) {
+            candidates = candidates.stream().filter(m -> m.getCategory() == category).toList();
+        }
+        return ResponseEntity.ok(dlqReplayService.replay(candidates, dryRun));
+    }
+
     @PostMapping("/send-valid")
     public ResponseEntity<String> sendValidMessage() {
         String validMessage = "This is a valid message for processing";
@@ -39,7 +93,12 @@ public class MessageController {
     @PostMapping("/process-file")
     public ResponseEntity<String> processFile(@RequestBody String filePath) {
         try {
-            fileProducerService.processJsonlFile(filePath);
+            if (!Files.isReadable(Path.of(filePath))) {
+                return ResponseEntity.status(500)
+                        .body("Error processing file: cannot read " + filePath);
+            }
+            // Ingestion runs on the job executor so the request thread is released immediately
+            jobExecutor.execute(() -> fileProducerService.processJsonlFile(filePath));
             return ResponseEntity.ok("File processing started for: " + filePath);
         } catch (Exception e) {
             return ResponseEntity.status(500)
@@ -49,6 +108,12 @@ public class MessageController {
 
     @GetMapping("/health")
     public ResponseEntity<String> health() {
+        // Cached by PipelineHealthIndicator: cheap enough for load balancer probes
+        PipelineHealthIndicator.Status status = pipelineHealth.getStatus();
+        if (!status.isReady()) {
+            return ResponseEntity.status(503)
+                    .body("DLQ Service is saturated: " + String.join(", ", status.breaches()));
+        }
         return ResponseEntity.ok("DLQ Service is running");
     }
 }
@@ -1,7 +1,11 @@
 package com.example.tpdlq.controller;
 
 import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.DashboardView;
 import com.example.tpdlq.model.DlqMessage;
+import com.example.tpdlq.model.ReplayResult;
+import com.example.tpdlq.service.DashboardModel;
+import com.example.tpdlq.service.DlqReplayService;
 import com.example.tpdlq.service.MessageProducerService;
 import com.example.tpdlq.service.ValidMessageStore;
 import org.slf4j.Logger;
@@ -10,14 +14,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
-import io.micrometer.core.instrument.MeterRegistry;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Optional;
 
 @Controller
 public class WebController {
@@ -34,23 +39,28 @@ public class WebController {
     private ValidMessageStore validMessageStore;
 
     @Autowired
-    private MeterRegistry meterRegistry;
+    private DashboardModel dashboardModel;
+
+    @Autowired
+    private DlqReplayService dlqReplayService;
 
     @GetMapping("/")
-    public String index(Model model) {
-        List<DlqMessage> dlqMessages = dlqConsumer.getDlqMessages();
-        model.addAttribute("dlqMessages", dlqMessages);
-        model.addAttribute("validMessages", validMessageStore.getAll());
+    public String index(Model model, WebRequest request) {
+        DashboardModel.Snapshot snapshot = dashboardModel.current();
+        // A flash message after a redirect is part of the page, so only plain reloads get a 304
+        if (!model.containsAttribute("message") && request.checkNotModified(snapshot.etag())) {
+            return null;
+        }
+        DashboardView view = snapshot.view();
+        model.addAttribute("dlqMessages", snapshot.recentDlq());
+        model.addAttribute("validMessages", snapshot.recentValid());
+        model.addAttribute("view", view);
 
         // Metrics cards
-        double processed = getCounter("tpdlq_messages_processed_total");
-        double valid = getCounter("tpdlq_messages_valid_total");
-        double invalid = getCounter("tpdlq_messages_invalid_total");
-        double malformed = getCounter("tpdlq_messages_malformed_total");
-        model.addAttribute("processedCount", (long) processed);
-        model.addAttribute("validCount", (long) valid);
-        model.addAttribute("invalidCount", (long) invalid);
-        model.addAttribute("malformedCount", (long) malformed);
+        model.addAttribute("processedCount", view.processed());
+        model.addAttribute("validCount", view.valid());
+        model.addAttribute("invalidCount", view.invalid());
+        model.addAttribute("malformedCount", view.malformed());
         return "index";
     }
 
@@ -58,11 +68,8 @@ public class WebController {
     public String reprocessMessage(@PathVariable String id, RedirectAttributes redirectAttributes) {
         return dlqConsumer.findById(id)
                 .map(msg -> {
-                    messageProducerService.sendToInputTopic(msg.getOriginalMessage());
-                    dlqConsumer.removeById(id);
-                    redirectAttributes.addFlashAttribute("message", "Reprocessed message " + id + " back to input topic.");
-                    redirectAttributes.addFlashAttribute("messageType", "success");
-                    logger.info("Reprocessed DLQ message {}", id);
+                    ReplayResult result = dlqReplayService.replay(List.of(msg), false);
+                    flashSingleReplay(id, result, "Reprocessed message " + id + " back to input topic.", redirectAttributes);
                     return "redirect:/";
                 })
                 .orElseGet(() -> {
@@ -76,13 +83,11 @@ public class WebController {
     public String reprocessEditedMessage(@PathVariable String id,
                                           @RequestParam("editedMessage") String editedMessage,
                                           RedirectAttributes redirectAttributes) {
-        if (dlqConsumer.findById(id).isPresent()) {
+        Optional<DlqMessage> msg = dlqConsumer.findById(id);
+        if (msg.isPresent()) {
             try {
-                messageProducerService.sendToInputTopic(editedMessage);
-                dlqConsumer.removeById(id);
-                redirectAttributes.addFlashAttribute("message", "Reprocessed edited message " + id + " successfully.");
-                redirectAttributes.addFlashAttribute("messageType", "success");
-                logger.info("Reprocessed edited DLQ message {}", id);
+                ReplayResult result = dlqReplayService.replayEdited(msg.get(), editedMessage);
+                flashSingleReplay(id, result, "Reprocessed edited message " + id + " successfully.", redirectAttributes);
             } catch (Exception e) {
                 redirectAttributes.addFlashAttribute("message", "Error reprocessing edited message: " + e.getMessage());
                 redirectAttributes.addFlashAttribute("messageType", "error");
@@ -96,24 +101,44 @@ public class WebController {
     }
 
     @PostMapping("/dlq/reprocess-all")
-    public String reprocessAllDlq(RedirectAttributes redirectAttributes) {
-        List<DlqMessage> messages = dlqConsumer.getDlqMessages();
-        int count = 0;
-        for (DlqMessage msg : messages) {
-            try {
-                messageProducerService.sendToInputTopic(msg.getOriginalMessage());
-                dlqConsumer.removeById(msg.getId());
-                count++;
-            } catch (Exception e) {
-                logger.error("Error reprocessing DLQ message {}", msg.getId(), e);
+    public String reprocessAllDlq(@RequestParam(defaultValue = "false") boolean dryRun,
+                                  RedirectAttributes redirectAttributes) {
+        ReplayResult result = dlqReplayService.replay(dlqConsumer.getDlqMessages(), dryRun);
+        String message;
+        if (dryRun) {
+            message = String.format("Dry run: %d of %d DLQ messages would pass validation now.",
+                    result.passing(), result.candidates());
+        } else {
+            message = String.format("Reprocessed %d of %d DLQ messages; %d still fail validation and stay in the DLQ.",
+                    result.republished(), result.candidates(), result.stillFailing());
+            if (result.failedSends() > 0) {
+                message += String.format(" %d could not be sent and were kept.", result.failedSends());
             }
         }
-        redirectAttributes.addFlashAttribute("message", "Reprocessed " + count + " DLQ messages.");
-        redirectAttributes.addFlashAttribute("messageType", "success");
-        logger.info("Bulk reprocessed {} DLQ messages", count);
+        redirectAttributes.addFlashAttribute("message", message);
+        redirectAttributes.addFlashAttribute("messageType", result.failedSends() > 0 ? "error" : "success");
         return "redirect:/";
     }
 
+    private void flashSingleReplay(String id, ReplayResult result, String successMessage,
+                                   RedirectAttributes redirectAttributes) {
+        if (result.republished() == 1) {
+            redirectAttributes.addFlashAttribute("message", successMessage);
+            redirectAttributes.addFlashAttribute("messageType", "success");
+            logger.info("Reprocessed DLQ message {}", id);
+        } else if (result.stillFailing() == 1) {
+            String detail = dlqConsumer.findById(id)
+                    .map(m -> m.getReason() + " (attempt " + m.getReplayAttempts() + ")")
+                    .orElse("validation failed");
+            redirectAttributes.addFlashAttribute("message",
+                    "Message " + id + " still fails validation: " + detail + "; left in the DLQ.");
+            redirectAttributes.addFlashAttribute("messageType", "error");
+        } else {
+            redirectAttributes.addFlashAttribute("message", "Could not send message " + id + "; left in the DLQ.");
+            redirectAttributes.addFlashAttribute("messageType", "error");
+        }
+    }
+
     @PostMapping("/dlq/clear")
     public String clearDlq(RedirectAttributes redirectAttributes) {
         dlqConsumer.clearDlqMessages();
@@ -132,11 +157,6 @@ public class WebController {
         return "redirect:/";
     }
 
-    private double getCounter(String name) {
-        var c = meterRegistry.find(name).counter();
-        return c != null ? c.count() : 0.0;
-    }
-
     @PostMapping("/upload")
     public String handleFileUpload(@RequestParam("file") MultipartFile file, 
                                    RedirectAttributes redirectAttributes) {
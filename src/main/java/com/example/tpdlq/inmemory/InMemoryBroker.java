@@ -0,0 +1,211 @@
+package com.example.tpdlq.inmemory;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process stand-in for a Kafka broker: topics with partitions, per-partition offsets and
+ * per-group committed positions.
+ * <p>
+ * Each partition is a lock-free bounded ring. Producers claim offsets with a CAS on the log end;
+ * a claim that would overwrite a record some consumer group has not read yet waits (up to
+ * {@code maxBlockMs}, like a full producer buffer). Without any group on a partition the oldest
+ * records are overwritten, which is this broker's retention.
+ */
+public class InMemoryBroker {
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final long maxBlockNanos;
+
+    public InMemoryBroker(int partitionCapacity, long maxBlockMs) {
+        this.capacity = partitionCapacity;
+        this.maxBlockNanos = TimeUnit.MILLISECONDS.toNanos(maxBlockMs);
+    }
+
+    /**
+     * Creates the topic if it does not exist yet. Existing topics keep their partition count.
+     */
+    public void createTopic(String name, int partitions) {
+        topics.computeIfAbsent(name, n -> new Topic(n, Math.max(1, partitions), capacity));
+    }
+
+    public int partitionCount(String topic) {
+        return topic(topic).partitions.length;
+    }
+
+    /**
+     * Appends a record, choosing the partition like the Kafka default partitioner
+     * (murmur2 of the key, round-robin for null keys).
+     *
+     * @return the stored record, carrying its partition and offset
+     * @throws TimeoutException if the partition stayed full for longer than max block time
+     */
+    public ConsumerRecord<String, String> append(ProducerRecord<String, String> record) {
+        Topic topic = topic(record.topic());
+        int partition = record.partition() != null ? record.partition() : topic.partitionFor(record.key());
+        return topic.partitions[partition].append(record, maxBlockNanos);
+    }
+
+    /**
+     * @return the next record for this group on the partition, or null if the group is caught up
+     */
+    public ConsumerRecord<String, String> poll(String group, TopicPartition tp) {
+        return partition(tp).read(group);
+    }
+
+    /**
+     * Moves the group's position on the partition; {@code nextOffset} is the next offset to read.
+     */
+    public void commit(String group, TopicPartition tp, long nextOffset) {
+        partition(tp).position(group).set(nextOffset);
+    }
+
+    public void seek(String group, TopicPartition tp, long offset) {
+        Partition partition = partition(tp);
+        partition.position(group).set(Math.max(offset, partition.earliestOffset()));
+    }
+
+    public long committed(String group, TopicPartition tp) {
+        return partition(tp).position(group).get();
+    }
+
+    public long endOffset(TopicPartition tp) {
+        return partition(tp).tail.get();
+    }
+
+    public List<TopicPartition> partitions(String topic) {
+        Topic t = topic(topic);
+        List<TopicPartition> result = new ArrayList<>(t.partitions.length);
+        for (int i = 0; i < t.partitions.length; i++) {
+            result.add(new TopicPartition(topic, i));
+        }
+        return result;
+    }
+
+    public Set<String> topicNames() {
+        return Set.copyOf(topics.keySet());
+    }
+
+    private Topic topic(String name) {
+        return topics.computeIfAbsent(name, n -> new Topic(n, 1, capacity));
+    }
+
+    private Partition partition(TopicPartition tp) {
+        return topic(tp.topic()).partitions[tp.partition()];
+    }
+
+    static final class Topic {
+        private final Partition[] partitions;
+        private final AtomicInteger roundRobin = new AtomicInteger();
+
+        Topic(String name, int partitionCount, int capacity) {
+            this.partitions = new Partition[partitionCount];
+            for (int i = 0; i < partitionCount; i++) {
+                partitions[i] = new Partition(new TopicPartition(name, i), capacity);
+            }
+        }
+
+        int partitionFor(String key) {
+            if (key == null) {
+                return Utils.toPositive(roundRobin.getAndIncrement()) % partitions.length;
+            }
+            return Utils.toPositive(Utils.murmur2(key.getBytes(StandardCharsets.UTF_8))) % partitions.length;
+        }
+    }
+
+    static final class Partition {
+        private final TopicPartition tp;
+        private final int capacity;
+        private final AtomicReferenceArray<ConsumerRecord<String, String>> slots;
+        // Next offset to be claimed by a producer (the log end offset)
+        private final AtomicLong tail = new AtomicLong();
+        private final Map<String, AtomicLong> positions = new ConcurrentHashMap<>();
+
+        Partition(TopicPartition tp, int capacity) {
+            this.tp = tp;
+            this.capacity = capacity;
+            this.slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        ConsumerRecord<String, String> append(ProducerRecord<String, String> record, long maxBlockNanos) {
+            long deadline = System.nanoTime() + maxBlockNanos;
+            while (true) {
+                long offset = tail.get();
+                if (offset - slowestPosition() >= capacity) {
+                    if (System.nanoTime() > deadline) {
+                        throw new TimeoutException("Partition " + tp + " full for " + maxBlockNanos / 1_000_000 + " ms");
+                    }
+                    LockSupport.parkNanos(50_000);
+                    continue;
+                }
+                if (tail.compareAndSet(offset, offset + 1)) {
+                    long timestamp = record.timestamp() != null ? record.timestamp() : System.currentTimeMillis();
+                    ConsumerRecord<String, String> stored = new ConsumerRecord<>(tp.topic(), tp.partition(), offset,
+                            timestamp, TimestampType.CREATE_TIME, -1, -1, record.key(), record.value(),
+                            new RecordHeaders(record.headers().toArray()), Optional.empty());
+                    slots.set(index(offset), stored);
+                    return stored;
+                }
+            }
+        }
+
+        ConsumerRecord<String, String> read(String group) {
+            AtomicLong groupPosition = position(group);
+            while (true) {
+                long position = groupPosition.get();
+                ConsumerRecord<String, String> record = slots.get(index(position));
+                if (record == null || record.offset() < position) {
+                    // A slot holding an older offset means the claiming producer has not published yet
+                    return null;
+                }
+                if (record.offset() == position) {
+                    return record;
+                }
+                // A newer offset means the position was overwritten, e.g. after a commit or seek to an
+                // offset no longer retained: restart from the earliest one (auto.offset.reset=earliest)
+                groupPosition.compareAndSet(position, Math.max(position, earliestOffset()));
+            }
+        }
+
+        AtomicLong position(String group) {
+            // A new group starts at the earliest retained offset (auto.offset.reset=earliest)
+            return positions.computeIfAbsent(group, g -> new AtomicLong(earliestOffset()));
+        }
+
+        long earliestOffset() {
+            return Math.max(0, tail.get() - capacity);
+        }
+
+        private long slowestPosition() {
+            long min = Long.MAX_VALUE;
+            for (AtomicLong position : positions.values()) {
+                min = Math.min(min, position.get());
+            }
+            // Without consumer groups the ring simply overwrites its oldest records
+            return min == Long.MAX_VALUE ? tail.get() : min;
+        }
+
+        private int index(long offset) {
+            return (int) (offset % capacity);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.tpdlq.inmemory;
+
+import io.micrometer.observation.Observation;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link KafkaTemplate} that appends to an {@link InMemoryBroker} instead of a Kafka producer.
+ * Every {@code send(...)} variant ends in {@link #doSend}, so callers keep using the normal API.
+ */
+public class InMemoryKafkaTemplate extends KafkaTemplate<String, String> {
+
+    private final InMemoryBroker broker;
+
+    public InMemoryKafkaTemplate(InMemoryBroker broker) {
+        super(() -> {
+            throw new IllegalStateException("The in-memory KafkaTemplate has no Kafka producer");
+        });
+        this.broker = broker;
+    }
+
+    @Override
+    protected CompletableFuture<SendResult<String, String>> doSend(ProducerRecord<String, String> producerRecord,
+                                                                   Observation observation) {
+        try {
+            ConsumerRecord<String, String> stored = broker.append(producerRecord);
+            RecordMetadata metadata = new RecordMetadata(new TopicPartition(stored.topic(), stored.partition()),
+                    stored.offset(), 0, stored.timestamp(), -1, -1);
+            return CompletableFuture.completedFuture(new SendResult<>(producerRecord, metadata));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public List<PartitionInfo> partitionsFor(String topic) {
+        return broker.partitions(topic).stream()
+                .map(tp -> new PartitionInfo(tp.topic(), tp.partition(), null, null, null))
+                .toList();
+    }
+
+    @Override
+    public Map<MetricName, ? extends Metric> metrics() {
+        return Map.of();
+    }
+
+    @Override
+    public void flush() {
+        // Appends are synchronous, nothing is buffered
+    }
+}
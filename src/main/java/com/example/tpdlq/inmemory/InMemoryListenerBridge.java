@@ -0,0 +1,130 @@
+package com.example.tpdlq.inmemory;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.AcknowledgingConsumerAwareMessageListener;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConsumerAwareMessageListener;
+import org.springframework.kafka.listener.ListenerUtils;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds {@code @KafkaListener} endpoints from the {@link InMemoryBroker}.
+ * <p>
+ * The listener containers are created as usual but never started (the in-memory profile sets
+ * {@code spring.kafka.listener.auto-startup=false}). For each container this bridge runs one
+ * polling thread over all partitions of the container's topics, invokes the container's message
+ * listener and commits the group's offset after every record. {@code pause()}/{@code resume()} on
+ * the container are honoured, so flow control works the same way as with a real broker.
+ */
+public class InMemoryListenerBridge implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryListenerBridge.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final InMemoryBroker broker;
+    private final KafkaListenerEndpointRegistry registry;
+    private final List<Thread> pollers = new ArrayList<>();
+    private volatile boolean running;
+
+    public InMemoryListenerBridge(InMemoryBroker broker, KafkaListenerEndpointRegistry registry) {
+        this.broker = broker;
+        this.registry = registry;
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            String[] topics = container.getContainerProperties().getTopics();
+            if (topics == null) {
+                continue;
+            }
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (String topic : topics) {
+                partitions.addAll(broker.partitions(topic));
+            }
+            String group = container.getGroupId();
+            // Register the group up front so producers respect its position from the first record
+            partitions.forEach(tp -> broker.committed(group, tp));
+            Thread poller = new Thread(() -> poll(container, group, partitions),
+                    "inmemory-" + container.getListenerId());
+            poller.setDaemon(true);
+            poller.start();
+            pollers.add(poller);
+            logger.info("In-memory listener {} (group {}) polling {}", container.getListenerId(), group, partitions);
+        }
+    }
+
+    private void poll(MessageListenerContainer container, String group, List<TopicPartition> partitions) {
+        Object listener = container.getContainerProperties().getMessageListener();
+        while (running) {
+            if (container.isPauseRequested()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            boolean delivered = false;
+            for (TopicPartition tp : partitions) {
+                ConsumerRecord<String, String> record = broker.poll(group, tp);
+                if (record == null) {
+                    continue;
+                }
+                delivered = true;
+                try {
+                    invoke(listener, record);
+                } catch (Exception e) {
+                    logger.error("In-memory listener {} failed on {}-{}@{}", container.getListenerId(),
+                            record.topic(), record.partition(), record.offset(), e);
+                }
+                broker.commit(group, tp, record.offset() + 1);
+            }
+            if (!delivered) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void invoke(Object listener, ConsumerRecord<String, String> record) {
+        switch (ListenerUtils.determineListenerType(listener)) {
+            case ACKNOWLEDGING_CONSUMER_AWARE ->
+                    ((AcknowledgingConsumerAwareMessageListener<String, String>) listener).onMessage(record, null, null);
+            case CONSUMER_AWARE ->
+                    ((ConsumerAwareMessageListener<String, String>) listener).onMessage(record, (Consumer<?, ?>) null);
+            case ACKNOWLEDGING ->
+                    ((AcknowledgingMessageListener<String, String>) listener).onMessage(record, (Acknowledgment) null);
+            default -> ((MessageListener<String, String>) listener).onMessage(record);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        for (Thread poller : pollers) {
+            try {
+                poller.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        pollers.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
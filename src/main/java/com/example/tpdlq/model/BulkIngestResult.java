@@ -0,0 +1,22 @@
+package com.example.tpdlq.model;
+
+import java.util.List;
+
+/**
+ * Summary of one bulk ingest request.
+ *
+ * @param received        records read from the body (blank NDJSON lines are not counted)
+ * @param accepted        records acknowledged by the broker
+ * @param rejected        records that were not valid JSON objects or whose send failed
+ * @param errors          the first rejections, ordered by line
+ * @param errorsTruncated true if more records were rejected than {@code errors} lists
+ */
+public record BulkIngestResult(long received, long accepted, long rejected, List<LineError> errors,
+                               boolean errorsTruncated, long elapsedMillis) {
+
+    /**
+     * @param line NDJSON line number, or 1-based element position for a JSON array body
+     */
+    public record LineError(long line, String error) {
+    }
+}
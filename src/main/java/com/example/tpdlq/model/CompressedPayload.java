@@ -0,0 +1,56 @@
+package com.example.tpdlq.model;
+
+/**
+ * A message payload held as UTF-8 bytes, deflated when that pays off. The {@code String} is only
+ * rebuilt when {@link #decode()} is called, e.g. when the dashboard or API renders the entry.
+ */
+public final class CompressedPayload {
+
+    // Codec the payload was compressed by, whose inflaters decode it
+    private final PayloadCodec codec;
+    final byte[] data;
+    // Dictionary the data was deflated with; shared by every payload compressed in the same generation
+    final byte[] dictionary;
+    final boolean deflated;
+    final int utf8Length;
+    final int stringBytes;
+
+    CompressedPayload(PayloadCodec codec, byte[] data, byte[] dictionary, boolean deflated, int utf8Length,
+                      int stringBytes) {
+        this.codec = codec;
+        this.data = data;
+        this.dictionary = dictionary;
+        this.deflated = deflated;
+        this.utf8Length = utf8Length;
+        this.stringBytes = stringBytes;
+    }
+
+    /**
+     * @return the decoded text, or null for a null payload
+     */
+    public static String decode(CompressedPayload payload) {
+        return payload == null ? null : payload.decode();
+    }
+
+    public String decode() {
+        return codec.decompress(this);
+    }
+
+    /**
+     * @return bytes held for this payload
+     */
+    public int getStoredBytes() {
+        return data.length;
+    }
+
+    /**
+     * @return bytes the payload would take as a {@code String} (one per char if Latin-1, two otherwise)
+     */
+    public int getStringBytes() {
+        return stringBytes;
+    }
+
+    public boolean isDeflated() {
+        return deflated;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.tpdlq.model;
+
+import java.util.Map;
+
+/**
+ * Counters, rates and store sizes shown on the dashboard and served by {@code /api/dashboard}.
+ *
+ * @param dlqByCategory entries currently in the DLQ store per category display name
+ * @param rates         messages per second keyed by series and window, e.g. {@code processed_1m}
+ */
+public record DashboardView(long processed, long valid, long invalid, long malformed,
+                            Map<String, Integer> dlqByCategory, int dlqStored, int validStored,
+                            Map<String, Double> rates) {
+}
@@ -0,0 +1,24 @@
+package com.example.tpdlq.model;
+
+/**
+ * DLQ lanes group error categories by what can be done with them.
+ */
+public enum DlqLane {
+    /** Fixable or transient failures that are worth replaying soon. */
+    RETRY,
+    /** Failures that need a look before anything else. */
+    DEFAULT,
+    /** Unparsable input: high volume, rarely recoverable. */
+    GARBAGE;
+
+    public static DlqLane of(ErrorCategory category) {
+        if (category == null) {
+            return DEFAULT;
+        }
+        return switch (category) {
+            case VALIDATION_ERROR, PERSISTENCE_ERROR, FORWARDING_ERROR -> RETRY;
+            case MALFORMED_ERROR -> GARBAGE;
+            default -> DEFAULT;
+        };
+    }
+}
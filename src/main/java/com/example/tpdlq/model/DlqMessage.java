@@ -6,9 +6,11 @@ import java.util.UUID;
 public class DlqMessage {
     private final String id;
     private String reason;
-    private String originalMessage;
+    private CompressedPayload originalMessage;
     private LocalDateTime timestamp;
     private ErrorCategory category;
+    // Replays rejected by local validation; the entry stays in the DLQ
+    private int replayAttempts;
 
     public DlqMessage() {
         this.id = UUID.randomUUID().toString();
@@ -16,7 +18,7 @@ public class DlqMessage {
         this.category = ErrorCategory.UNKNOWN_ERROR;
     }
 
-    public DlqMessage(String reason, String originalMessage) {
+    public DlqMessage(String reason, CompressedPayload originalMessage) {
         this.id = UUID.randomUUID().toString();
         this.reason = reason;
         this.originalMessage = originalMessage;
@@ -24,7 +26,7 @@ public class DlqMessage {
         this.category = ErrorCategory.UNKNOWN_ERROR;
     }
 
-    public DlqMessage(String reason, String originalMessage, ErrorCategory category) {
+    public DlqMessage(String reason, CompressedPayload originalMessage, ErrorCategory category) {
         this.id = UUID.randomUUID().toString();
         this.reason = reason;
         this.originalMessage = originalMessage;
@@ -32,6 +34,43 @@ public class DlqMessage {
         this.category = category;
     }
 
+    /**
+     * Rebuilds an entry with its original id and timestamp, e.g. from a store snapshot.
+     */
+    public DlqMessage(String id, String reason, CompressedPayload originalMessage, ErrorCategory category,
+                      LocalDateTime timestamp) {
+        this.id = id;
+        this.reason = reason;
+        this.originalMessage = originalMessage;
+        this.timestamp = timestamp;
+        this.category = category;
+    }
+
+    private DlqMessage(DlqMessage source, String reason, ErrorCategory category) {
+        this.id = source.id;
+        this.reason = reason;
+        this.originalMessage = source.originalMessage;
+        this.timestamp = source.timestamp;
+        this.category = category;
+        this.replayAttempts = source.replayAttempts;
+    }
+
+    /**
+     * Entries in the DLQ store are read without a lock, so a rejected replay replaces the entry with
+     * this copy instead of updating it in place.
+     *
+     * @param editedPayload payload the replay was tried with, or null to keep the stored one
+     * @return a copy with the same id and timestamp, the new reason and category and one more replay attempt
+     */
+    public DlqMessage afterRejectedReplay(CompressedPayload editedPayload, String reason, ErrorCategory category) {
+        DlqMessage copy = new DlqMessage(this, reason, category);
+        if (editedPayload != null) {
+            copy.originalMessage = editedPayload;
+        }
+        copy.replayAttempts++;
+        return copy;
+    }
+
     public String getId() {
         return id;
     }
@@ -44,11 +83,21 @@ public class DlqMessage {
         this.reason = reason;
     }
 
+    /**
+     * @return the payload, decompressed on every call; callers needing it repeatedly should keep the result
+     */
     public String getOriginalMessage() {
+        return CompressedPayload.decode(originalMessage);
+    }
+
+    /**
+     * @return the stored form of the payload, or null if there is none
+     */
+    public CompressedPayload getPayload() {
         return originalMessage;
     }
 
-    public void setOriginalMessage(String originalMessage) {
+    public void setPayload(CompressedPayload originalMessage) {
         this.originalMessage = originalMessage;
     }
 
@@ -68,13 +117,22 @@ public class DlqMessage {
         this.category = category;
     }
 
+    public int getReplayAttempts() {
+        return replayAttempts;
+    }
+
+    public void setReplayAttempts(int replayAttempts) {
+        this.replayAttempts = replayAttempts;
+    }
+
     @Override
     public String toString() {
         return "DlqMessage{" +
                 "reason='" + reason + '\'' +
-                ", originalMessage='" + originalMessage + '\'' +
+                ", originalMessage='" + getOriginalMessage() + '\'' +
                 ", timestamp=" + timestamp +
                 ", category=" + category +
+                ", replayAttempts=" + replayAttempts +
                 '}';
     }
 }
@@ -3,6 +3,10 @@ package com.example.tpdlq.model;
 public enum ErrorCategory {
     VALIDATION_ERROR("ValidationError"),
     MALFORMED_ERROR("MalformedError"),
+    ENRICHMENT_ERROR("EnrichmentError"),
+    PERSISTENCE_ERROR("PersistenceError"),
+    AGGREGATION_ERROR("AggregationError"),
+    FORWARDING_ERROR("ForwardingError"),
     UNKNOWN_ERROR("UnknownError");
 
     private final String displayName;
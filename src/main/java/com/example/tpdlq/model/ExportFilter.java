@@ -0,0 +1,36 @@
+package com.example.tpdlq.model;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Selects the entries of an export.
+ *
+ * @param categories   DLQ categories to include; empty includes all
+ * @param from         inclusive lower bound on the entry timestamp, or null
+ * @param to           exclusive upper bound on the entry timestamp, or null
+ * @param includeValid also export the valid message window (time bounds apply, categories do not)
+ */
+public record ExportFilter(Set<ErrorCategory> categories, LocalDateTime from, LocalDateTime to,
+                           boolean includeValid) {
+
+    public ExportFilter {
+        categories = categories == null ? Set.of() : Set.copyOf(categories);
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("Export range is empty: " + from + " - " + to);
+        }
+    }
+
+    public boolean matches(DlqMessage message) {
+        ErrorCategory category = message.getCategory() != null ? message.getCategory() : ErrorCategory.UNKNOWN_ERROR;
+        return (categories.isEmpty() || categories.contains(category)) && inRange(message.getTimestamp());
+    }
+
+    public boolean matches(ValidMessage message) {
+        return inRange(message.getTimestamp());
+    }
+
+    private boolean inRange(LocalDateTime timestamp) {
+        return (from == null || !timestamp.isBefore(from)) && (to == null || timestamp.isBefore(to));
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.tpdlq.model;
+
+/**
+ * Outcome of one export.
+ *
+ * @param path  file written, or null for exports streamed to a client
+ * @param bytes compressed bytes written
+ */
+public record ExportResult(String path, long dlqRecords, long validRecords, long bytes, long elapsedMillis) {
+}
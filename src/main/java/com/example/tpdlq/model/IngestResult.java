@@ -0,0 +1,12 @@
+package com.example.tpdlq.model;
+
+/**
+ * Outcome of one JSONL file ingestion.
+ */
+public record IngestResult(long totalLines, long successfulLines, long skippedLines, long failedSends,
+                           long elapsedNanos, double p99SendMillis) {
+
+    public double linesPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : totalLines * 1_000_000_000.0 / elapsedNanos;
+    }
+}
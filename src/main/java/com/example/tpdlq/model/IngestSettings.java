@@ -0,0 +1,23 @@
+package com.example.tpdlq.model;
+
+/**
+ * Tuning knobs for JSONL file ingestion.
+ *
+ * @param readerBufferBytes buffer size of the file reader
+ * @param parallelism       threads validating and sending lines; 1 sends from the reading thread
+ * @param batchSize         lines per hand-off; each batch waits for its acks before the worker takes the next
+ */
+public record IngestSettings(int readerBufferBytes, int parallelism, int batchSize) {
+
+    public IngestSettings {
+        if (readerBufferBytes < 1 || parallelism < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Ingest settings must be positive: " + readerBufferBytes
+                    + "/" + parallelism + "/" + batchSize);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "buffer=" + readerBufferBytes + " parallelism=" + parallelism + " batch=" + batchSize;
+    }
+}
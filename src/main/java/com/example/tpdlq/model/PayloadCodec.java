@@ -0,0 +1,151 @@
+package com.example.tpdlq.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate with a shared preset dictionary for stored message payloads.
+ * <p>
+ * Stored payloads are small JSON documents with the same field names and similar values, which
+ * plain per-message compression barely shrinks. Every {@value #SAMPLE_EVERY}th payload is sampled,
+ * and every {@value #RETRAIN_EVERY} payloads the dictionary is rebuilt from the latest samples
+ * (newest last, where deflate finds matches cheapest). Each payload keeps a reference to the
+ * dictionary generation it was compressed with, so retraining never invalidates stored data.
+ * Payloads that do not shrink are kept as plain UTF-8.
+ * <p>
+ * The dictionary, samples and coder pools belong to the instance: the application shares one codec
+ * between its stores (see {@code StoreConfig}), and tests create their own.
+ */
+public final class PayloadCodec {
+
+    static final int MIN_COMPRESS_BYTES = 64;
+    static final int SAMPLE_EVERY = 8;
+    static final int RETRAIN_EVERY = 1024;
+    private static final int MAX_SAMPLE_BYTES = 1024;
+    private static final int MAX_DICTIONARY_BYTES = 16 * 1024;
+    private static final int POOL_SIZE = 8;
+
+    private final AtomicLong compressed = new AtomicLong();
+    private final ArrayDeque<byte[]> samples = new ArrayDeque<>();
+    private int sampleBytes;
+    private volatile byte[] dictionary;
+
+    // Deflater/Inflater hold native buffers: reuse a few instead of one per call or per thread
+    private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /**
+     * @return the payload, or null if {@code text} is null
+     */
+    public CompressedPayload compress(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        int stringBytes = isLatin1(text) ? text.length() : text.length() * 2;
+        train(utf8);
+        if (utf8.length < MIN_COMPRESS_BYTES) {
+            return new CompressedPayload(this, utf8, null, false, utf8.length, stringBytes);
+        }
+        byte[] dict = dictionary;
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED, true);
+        }
+        try {
+            if (dict != null) {
+                deflater.setDictionary(dict);
+            }
+            deflater.setInput(utf8);
+            deflater.finish();
+            byte[] out = new byte[utf8.length];
+            int length = deflater.deflate(out);
+            if (!deflater.finished() || length >= utf8.length) {
+                return new CompressedPayload(this, utf8, null, false, utf8.length, stringBytes);
+            }
+            return new CompressedPayload(this, Arrays.copyOf(out, length), dict, true, utf8.length, stringBytes);
+        } finally {
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    String decompress(CompressedPayload payload) {
+        if (!payload.deflated) {
+            return new String(payload.data, StandardCharsets.UTF_8);
+        }
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        try {
+            // Raw deflate streams do not announce a dictionary: it must be set before inflating
+            if (payload.dictionary != null) {
+                inflater.setDictionary(payload.dictionary);
+            }
+            inflater.setInput(payload.data);
+            byte[] out = new byte[payload.utf8Length];
+            int length = 0;
+            while (length < out.length && !inflater.finished()) {
+                int n = inflater.inflate(out, length, out.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != out.length) {
+                throw new IllegalStateException("Corrupt payload: " + length + " of " + out.length + " bytes");
+            }
+            return new String(out, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt payload", e);
+        } finally {
+            inflater.reset();
+            if (!inflaters.offer(inflater)) {
+                inflater.end();
+            }
+        }
+    }
+
+    private void train(byte[] utf8) {
+        long n = compressed.incrementAndGet();
+        if (n % SAMPLE_EVERY != 0) {
+            return;
+        }
+        synchronized (samples) {
+            byte[] sample = utf8.length > MAX_SAMPLE_BYTES ? Arrays.copyOf(utf8, MAX_SAMPLE_BYTES) : utf8;
+            samples.addLast(sample);
+            sampleBytes += sample.length;
+            while (sampleBytes > MAX_DICTIONARY_BYTES) {
+                sampleBytes -= samples.removeFirst().length;
+            }
+            if (n % RETRAIN_EVERY == 0 || dictionary == null && sampleBytes >= MAX_DICTIONARY_BYTES / 4) {
+                byte[] dict = new byte[sampleBytes];
+                int pos = 0;
+                for (byte[] s : samples) {
+                    System.arraycopy(s, 0, dict, pos, s.length);
+                    pos += s.length;
+                }
+                dictionary = dict;
+            }
+        }
+    }
+
+    private static boolean isLatin1(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.tpdlq.model;
+
+import java.util.Map;
+
+/**
+ * Outcome of one DLQ replay.
+ *
+ * @param candidates        entries considered
+ * @param passing           entries that pass local validation now
+ * @param republished       passing entries sent to the input topic and removed from the DLQ (0 for a dry run)
+ * @param stillFailing      entries that still fail; they stay in the DLQ with an updated reason
+ * @param failedSends       passing entries whose send failed; they stay in the DLQ unchanged
+ * @param failingByCategory still-failing entries per new category
+ */
+public record ReplayResult(boolean dryRun, int candidates, int passing, int republished, int stillFailing,
+                           int failedSends, Map<ErrorCategory, Integer> failingByCategory, long elapsedMillis) {
+}
@@ -0,0 +1,9 @@
+package com.example.tpdlq.model;
+
+/**
+ * Per-user totals over a time window.
+ *
+ * @param ratePerSecond orders per second over the window length
+ */
+public record UserAggregate(String userId, long count, double total, double ratePerSecond) {
+}
@@ -6,10 +6,10 @@ public class ValidMessage {
     private final String orderId;
     private final String userId;
     private final double amount;
-    private final String originalMessage;
+    private final CompressedPayload originalMessage;
     private final LocalDateTime timestamp;
 
-    public ValidMessage(String orderId, String userId, double amount, String originalMessage) {
+    public ValidMessage(String orderId, String userId, double amount, CompressedPayload originalMessage) {
         this.orderId = orderId;
         this.userId = userId;
         this.amount = amount;
@@ -17,6 +17,17 @@ public class ValidMessage {
         this.timestamp = LocalDateTime.now();
     }
 
+    /**
+     * Rebuilds a message with its original timestamp, e.g. from a store snapshot.
+     */
+    public ValidMessage(String orderId, String userId, double amount, CompressedPayload originalMessage, LocalDateTime timestamp) {
+        this.orderId = orderId;
+        this.userId = userId;
+        this.amount = amount;
+        this.originalMessage = originalMessage;
+        this.timestamp = timestamp;
+    }
+
     public String getOrderId() {
         return orderId;
     }
@@ -29,7 +40,14 @@ public class ValidMessage {
         return amount;
     }
 
+    /**
+     * @return the payload, decompressed on every call
+     */
     public String getOriginalMessage() {
+        return CompressedPayload.decode(originalMessage);
+    }
+
+    public CompressedPayload getPayload() {
         return originalMessage;
     }
 
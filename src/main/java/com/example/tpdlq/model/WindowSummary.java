@@ -0,0 +1,11 @@
+package com.example.tpdlq.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Result of a closed (or currently open) aggregation window.
+ */
+public record WindowSummary(Instant start, Instant end, long count, double total,
+                            int distinctUsers, List<UserAggregate> topUsers) {
+}
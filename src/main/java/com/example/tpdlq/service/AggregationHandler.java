@@ -0,0 +1,33 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.Order;
+import org.springframework.stereotype.Component;
+
+@Component
+@org.springframework.core.annotation.Order(AggregationHandler.ORDER)
+public class AggregationHandler implements OrderHandler {
+
+    public static final int ORDER = 350;
+
+    private final WindowedAggregator windowedAggregator;
+
+    public AggregationHandler(WindowedAggregator windowedAggregator) {
+        this.windowedAggregator = windowedAggregator;
+    }
+
+    @Override
+    public String getStageName() {
+        return "aggregation";
+    }
+
+    @Override
+    public ErrorCategory getFailureCategory() {
+        return ErrorCategory.AGGREGATION_ERROR;
+    }
+
+    @Override
+    public void handle(Order order, String message) {
+        windowedAggregator.add(order.getUserId(), order.getAmount());
+    }
+}
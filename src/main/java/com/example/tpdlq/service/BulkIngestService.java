@@ -0,0 +1,204 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.BulkIngestResult;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams a bulk request body of orders to the input topic.
+ * <p>
+ * The body is either NDJSON (one order per line) or a JSON array of orders; the first
+ * non-whitespace byte decides. It is parsed while it is read, so only one record is held at a
+ * time. Each record is sent as soon as it is parsed, with at most {@code bulk.max-in-flight}
+ * sends awaiting an ack per request; the summary is returned once every send has completed.
+ * <p>
+ * Records that are not JSON objects are rejected up front; everything else is validated by the
+ * input consumer as usual. A syntax error inside a JSON array ends the request, because the
+ * parser cannot find the next element; in NDJSON only the broken line is rejected.
+ */
+@Service
+public class BulkIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkIngestService.class);
+
+    private final MessageProducerService messageProducerService;
+    private final String inputTopic;
+    private final int readerBufferBytes;
+    private final int maxInFlight;
+    private final int maxErrors;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+
+    public BulkIngestService(MessageProducerService messageProducerService,
+                             MeterRegistry meterRegistry,
+                             @Value("${kafka.topic.input}") String inputTopic,
+                             @Value("${ingest.reader-buffer-bytes:8192}") int readerBufferBytes,
+                             @Value("${bulk.max-in-flight:1000}") int maxInFlight,
+                             @Value("${bulk.max-errors:100}") int maxErrors) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("bulk.max-in-flight must be positive: " + maxInFlight);
+        }
+        this.messageProducerService = messageProducerService;
+        this.inputTopic = inputTopic;
+        this.readerBufferBytes = readerBufferBytes;
+        this.maxInFlight = maxInFlight;
+        this.maxErrors = maxErrors;
+        this.acceptedCounter = meterRegistry.counter("tpdlq_bulk_records_total", "outcome", "accepted");
+        this.rejectedCounter = meterRegistry.counter("tpdlq_bulk_records_total", "outcome", "rejected");
+    }
+
+    public BulkIngestResult ingest(InputStream body) throws IOException {
+        long start = System.nanoTime();
+        Request request = new Request();
+        PushbackInputStream in = new PushbackInputStream(body, 1);
+        int leadingLines = 0;
+        int first;
+        while ((first = in.read()) != -1 && Character.isWhitespace(first)) {
+            if (first == '\n') {
+                leadingLines++;
+            }
+        }
+        if (first != -1) {
+            in.unread(first);
+            if (first == '[') {
+                readArray(in, request);
+            } else {
+                readLines(in, leadingLines, request);
+            }
+        }
+        // All permits back means every send has been acknowledged or has failed
+        request.inFlight.acquireUninterruptibly(maxInFlight);
+
+        List<BulkIngestResult.LineError> errors;
+        synchronized (request.errors) {
+            errors = new ArrayList<>(request.errors);
+        }
+        errors.sort(Comparator.comparingLong(BulkIngestResult.LineError::line));
+        BulkIngestResult result = new BulkIngestResult(request.received, request.accepted.sum(),
+                request.rejected.sum(), errors, request.rejected.sum() > errors.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.info("Bulk ingest finished. Received: {}, Accepted: {}, Rejected: {}",
+                result.received(), result.accepted(), result.rejected());
+        return result;
+    }
+
+    private void readLines(InputStream in, int leadingLines, Request request) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), readerBufferBytes);
+        long lineNumber = leadingLines;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            request.received++;
+            try {
+                if (!objectMapper.readTree(line).isObject()) {
+                    reject(request, lineNumber, "Expected a JSON object");
+                    continue;
+                }
+            } catch (JsonProcessingException e) {
+                reject(request, lineNumber, "Malformed JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            send(request, lineNumber, line);
+        }
+    }
+
+    private void readArray(InputStream in, Request request) throws IOException {
+        long position = 0;
+        boolean inElement = false;
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            parser.nextToken(); // START_ARRAY
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    request.received++;
+                    reject(request, position + 1, "Unexpected end of body: JSON array is not closed");
+                    return;
+                }
+                position++;
+                request.received++;
+                inElement = true;
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    reject(request, position, "Expected a JSON object");
+                } else {
+                    JsonNode order = objectMapper.readTree(parser);
+                    send(request, position, objectMapper.writeValueAsString(order));
+                }
+                inElement = false;
+            }
+        } catch (JsonProcessingException e) {
+            if (!inElement) {
+                // Broken between elements: count the element the parser was looking for
+                position++;
+                request.received++;
+            }
+            reject(request, position, "Malformed JSON, rest of the body ignored: " + e.getOriginalMessage());
+        }
+    }
+
+    private void send(Request request, long line, String message) {
+        request.inFlight.acquireUninterruptibly();
+        try {
+            messageProducerService.sendToTopic(inputTopic, null, message).whenComplete((result, error) -> {
+                if (error == null) {
+                    request.accepted.increment();
+                    acceptedCounter.increment();
+                } else {
+                    reject(request, line, "Send failed: " + error.getMessage());
+                }
+                request.inFlight.release();
+            });
+        } catch (RuntimeException e) {
+            // e.g. max.block.ms expired while the producer buffer was full
+            reject(request, line, "Send failed: " + e.getMessage());
+            request.inFlight.release();
+        }
+    }
+
+    private void reject(Request request, long line, String error) {
+        request.rejected.increment();
+        rejectedCounter.increment();
+        synchronized (request.errors) {
+            if (request.errors.size() < maxErrors) {
+                request.errors.add(new BulkIngestResult.LineError(line, error));
+            }
+        }
+    }
+
+    private final class Request {
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final List<BulkIngestResult.LineError> errors = new ArrayList<>();
+        // Only touched by the reading thread
+        private long received;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.DashboardView;
+import com.example.tpdlq.model.DlqMessage;
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.ValidMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dashboard view-model cache.
+ * <p>
+ * The input consumer reports each outcome as it happens; counters and per-second rate series are
+ * updated in place. The view (counters, DLQ breakdown per category, 1m/5m rates and the newest
+ * entries of both stores) is rebuilt at most once per {@code dashboard.max-staleness} and only
+ * when something changed, and each distinct view gets a new ETag so polling clients can be
+ * answered with 304 Not Modified.
+ */
+@Component
+public class DashboardModel {
+
+    public enum Event { PROCESSED, VALID, INVALID, MALFORMED }
+
+    /**
+     * A built view with the newest store entries and the ETag that identifies it.
+     */
+    public record Snapshot(String etag, DashboardView view, List<DlqMessage> recentDlq,
+                           List<ValidMessage> recentValid) {
+    }
+
+    private static final int ONE_MINUTE = 60;
+    private static final int FIVE_MINUTES = 300;
+
+    private final DlqConsumer dlqConsumer;
+    private final ValidMessageStore validMessageStore;
+    private final long maxStalenessMillis;
+    private final int recentItems;
+    private final Clock clock;
+
+    private final Map<Event, LongAdder> counts = new EnumMap<>(Event.class);
+    private final RateSeries processedRate = new RateSeries(FIVE_MINUTES);
+    private final RateSeries validRate = new RateSeries(FIVE_MINUTES);
+    private final RateSeries dlqRate = new RateSeries(FIVE_MINUTES);
+
+    // ETags restart with the process, so prefix them with the start time to never match a stale client copy
+    private final String etagPrefix;
+    private long version;
+    private long lastDlqChange = -1;
+    private long lastValidChange = -1;
+    private volatile long builtAtMillis;
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public DashboardModel(DlqConsumer dlqConsumer,
+                          ValidMessageStore validMessageStore,
+                          @Value("${dashboard.max-staleness:1s}") Duration maxStaleness,
+                          @Value("${dashboard.recent-items:200}") int recentItems) {
+        this(dlqConsumer, validMessageStore, maxStaleness, recentItems, Clock.systemUTC());
+    }
+
+    DashboardModel(DlqConsumer dlqConsumer,
+                   ValidMessageStore validMessageStore,
+                   Duration maxStaleness,
+                   int recentItems,
+                   Clock clock) {
+        this.dlqConsumer = dlqConsumer;
+        this.validMessageStore = validMessageStore;
+        this.maxStalenessMillis = maxStaleness.toMillis();
+        this.recentItems = recentItems;
+        this.clock = clock;
+        this.etagPrefix = Long.toString(clock.millis(), 36);
+        for (Event event : Event.values()) {
+            counts.put(event, new LongAdder());
+        }
+    }
+
+    public void record(Event event) {
+        counts.get(event).increment();
+        long second = clock.millis() / 1000;
+        switch (event) {
+            case PROCESSED -> processedRate.record(second);
+            case VALID -> validRate.record(second);
+            case INVALID, MALFORMED -> dlqRate.record(second);
+        }
+    }
+
+    /**
+     * @return the cached view, rebuilt first if it is older than the staleness bound
+     */
+    public Snapshot current() {
+        Snapshot cached = snapshot;
+        if (cached != null && clock.millis() - builtAtMillis < maxStalenessMillis) {
+            return cached;
+        }
+        synchronized (this) {
+            if (snapshot != null && clock.millis() - builtAtMillis < maxStalenessMillis) {
+                return snapshot;
+            }
+            snapshot = rebuild(snapshot);
+            builtAtMillis = clock.millis();
+            return snapshot;
+        }
+    }
+
+    private Snapshot rebuild(Snapshot previous) {
+        long dlqChange = dlqConsumer.getChangeCount();
+        long validChange = validMessageStore.getChangeCount();
+        boolean storesChanged = dlqChange != lastDlqChange || validChange != lastValidChange;
+
+        Map<String, Integer> byCategory = new LinkedHashMap<>();
+        int dlqStored = 0;
+        for (Map.Entry<ErrorCategory, Integer> e : dlqConsumer.getCategorySizes().entrySet()) {
+            if (e.getValue() > 0) {
+                byCategory.put(e.getKey().getDisplayName(), e.getValue());
+                dlqStored += e.getValue();
+            }
+        }
+        long now = clock.millis() / 1000;
+        Map<String, Double> rates = new LinkedHashMap<>();
+        rates.put("processed_1m", round(processedRate.rate(now, ONE_MINUTE)));
+        rates.put("processed_5m", round(processedRate.rate(now, FIVE_MINUTES)));
+        rates.put("valid_1m", round(validRate.rate(now, ONE_MINUTE)));
+        rates.put("valid_5m", round(validRate.rate(now, FIVE_MINUTES)));
+        rates.put("dlq_1m", round(dlqRate.rate(now, ONE_MINUTE)));
+        rates.put("dlq_5m", round(dlqRate.rate(now, FIVE_MINUTES)));
+
+        DashboardView view = new DashboardView(count(Event.PROCESSED), count(Event.VALID), count(Event.INVALID),
+                count(Event.MALFORMED), byCategory, dlqStored, validMessageStore.size(), rates);
+        if (previous != null && !storesChanged && view.equals(previous.view())) {
+            return previous;
+        }
+        lastDlqChange = dlqChange;
+        lastValidChange = validChange;
+        version++;
+        return new Snapshot("\"" + etagPrefix + "-" + version + "\"", view,
+                storesChanged || previous == null ? dlqConsumer.getRecent(recentItems) : previous.recentDlq(),
+                storesChanged || previous == null ? validMessageStore.getRecent(recentItems) : previous.recentValid());
+    }
+
+    private long count(Event event) {
+        return counts.get(event).sum();
+    }
+
+    private static double round(double rate) {
+        return Math.round(rate * 100) / 100.0;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.DlqLane;
+import com.example.tpdlq.model.ErrorCategory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-lane DLQ settings: the topic each category is routed to, how many entries of a lane the
+ * dashboard store keeps, and which share of a lane is stored at all.
+ * <p>
+ * Every DLQ record carries its category in the {@value #CATEGORY_HEADER} header, so lanes work on
+ * the single {@code kafka.topic.dlq} topic too. With {@code dlq.lanes.enabled=true} the retry and
+ * garbage lanes are also routed to their own topics, each with its own listener concurrency and
+ * retention.
+ */
+@Component
+public class DlqLanes {
+
+    public static final String CATEGORY_HEADER = "tpdlq-category";
+
+    private final boolean enabled;
+    private final Map<DlqLane, String> topics = new EnumMap<>(DlqLane.class);
+    private final Map<DlqLane, Integer> capacities = new EnumMap<>(DlqLane.class);
+    private final Map<DlqLane, Integer> sampleEvery = new EnumMap<>(DlqLane.class);
+    private final Map<DlqLane, AtomicLong> seen = new EnumMap<>(DlqLane.class);
+    private final Map<DlqLane, Counter> sampledOut = new EnumMap<>(DlqLane.class);
+
+    public DlqLanes(MeterRegistry meterRegistry,
+                    @Value("${dlq.lanes.enabled:false}") boolean enabled,
+                    @Value("${kafka.topic.dlq}") String defaultTopic,
+                    @Value("${dlq.lane.retry.topic:tp8-dlq-retry}") String retryTopic,
+                    @Value("${dlq.lane.garbage.topic:tp8-dlq-garbage}") String garbageTopic,
+                    @Value("${dlq.lane.retry.capacity:10000}") int retryCapacity,
+                    @Value("${dlq.lane.default.capacity:10000}") int defaultCapacity,
+                    @Value("${dlq.lane.garbage.capacity:1000}") int garbageCapacity,
+                    @Value("${dlq.lane.garbage.sample-every:1}") int garbageSampleEvery) {
+        this.enabled = enabled;
+        topics.put(DlqLane.RETRY, enabled ? retryTopic : defaultTopic);
+        topics.put(DlqLane.DEFAULT, defaultTopic);
+        topics.put(DlqLane.GARBAGE, enabled ? garbageTopic : defaultTopic);
+        capacities.put(DlqLane.RETRY, retryCapacity);
+        capacities.put(DlqLane.DEFAULT, defaultCapacity);
+        capacities.put(DlqLane.GARBAGE, garbageCapacity);
+        sampleEvery.put(DlqLane.RETRY, 1);
+        sampleEvery.put(DlqLane.DEFAULT, 1);
+        sampleEvery.put(DlqLane.GARBAGE, Math.max(1, garbageSampleEvery));
+        for (DlqLane lane : DlqLane.values()) {
+            seen.put(lane, new AtomicLong());
+            sampledOut.put(lane, meterRegistry.counter("tpdlq_dlq_lane_sampled_out_total", "lane", lane.name()));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String topicFor(ErrorCategory category) {
+        return topics.get(DlqLane.of(category));
+    }
+
+    public int capacity(DlqLane lane) {
+        return capacities.get(lane);
+    }
+
+    /**
+     * @return true if this record of the lane should be parsed and stored; false if it is only counted
+     */
+    public boolean sample(DlqLane lane) {
+        int every = sampleEvery.get(lane);
+        if (every == 1 || seen.get(lane).getAndIncrement() % every == 0) {
+            return true;
+        }
+        sampledOut.get(lane).increment();
+        return false;
+    }
+}
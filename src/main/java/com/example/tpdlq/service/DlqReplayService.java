@@ -0,0 +1,228 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.DlqMessage;
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.ReplayResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays DLQ entries to the input topic, validating them locally first.
+ * <p>
+ * Each payload is run through {@link OrderValidator#check(String)}, the same parser and rules as
+ * the input consumer. Only entries that pass are sent, after their orderId is cleared from the
+ * idempotency window; they leave the DLQ once the broker acks them. Entries that still fail are
+ * not sent and stay in the DLQ with the new reason and category and one more replay attempt,
+ * instead of bouncing through both topics back into the DLQ. A dry run only validates and reports
+ * how many candidates would pass.
+ * <p>
+ * Candidates are processed in batches of {@code replay.batch-size}; with more than one batch they
+ * run on {@code replay.parallelism} threads. Each batch waits for its sends, and the DLQ list is
+ * updated once at the end.
+ */
+@Service
+public class DlqReplayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DlqReplayService.class);
+
+    private final DlqConsumer dlqConsumer;
+    private final OrderValidator orderValidator;
+    private final MessageProducerService messageProducerService;
+    private final OrderDeduplicator orderDeduplicator;
+    private final int parallelism;
+    private final int batchSize;
+
+    private final Counter republishedCounter;
+    private final Counter stillFailingCounter;
+    private final Counter failedSendCounter;
+    private final Timer replayTimer;
+
+    public DlqReplayService(DlqConsumer dlqConsumer,
+                            OrderValidator orderValidator,
+                            MessageProducerService messageProducerService,
+                            OrderDeduplicator orderDeduplicator,
+                            MeterRegistry meterRegistry,
+                            @Value("${replay.parallelism:4}") int parallelism,
+                            @Value("${replay.batch-size:500}") int batchSize) {
+        if (parallelism < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("replay.parallelism and replay.batch-size must be positive");
+        }
+        this.dlqConsumer = dlqConsumer;
+        this.orderValidator = orderValidator;
+        this.messageProducerService = messageProducerService;
+        this.orderDeduplicator = orderDeduplicator;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.republishedCounter = meterRegistry.counter("tpdlq_replay_total", "outcome", "republished");
+        this.stillFailingCounter = meterRegistry.counter("tpdlq_replay_total", "outcome", "still_failing");
+        this.failedSendCounter = meterRegistry.counter("tpdlq_replay_total", "outcome", "send_failed");
+        this.replayTimer = meterRegistry.timer("tpdlq_replay_duration");
+    }
+
+    public ReplayResult replay(List<DlqMessage> entries, boolean dryRun) {
+        List<Candidate> candidates = new ArrayList<>(entries.size());
+        for (DlqMessage entry : entries) {
+            candidates.add(new Candidate(entry, null));
+        }
+        return run(candidates, dryRun);
+    }
+
+    /**
+     * Replays an entry with a corrected payload; if it still fails, the entry keeps the edit.
+     */
+    public ReplayResult replayEdited(DlqMessage entry, String editedMessage) {
+        return run(List.of(new Candidate(entry, editedMessage)), false);
+    }
+
+    private ReplayResult run(List<Candidate> candidates, boolean dryRun) {
+        long start = System.nanoTime();
+        List<List<Candidate>> batches = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i += batchSize) {
+            batches.add(candidates.subList(i, Math.min(i + batchSize, candidates.size())));
+        }
+
+        Outcome total = new Outcome();
+        if (batches.size() <= 1 || parallelism == 1) {
+            batches.forEach(batch -> total.add(replayBatch(batch, dryRun)));
+        } else {
+            ExecutorService workers = Executors.newFixedThreadPool(Math.min(parallelism, batches.size()), replayThreads());
+            try {
+                List<Future<Outcome>> outcomes = new ArrayList<>(batches.size());
+                for (List<Candidate> batch : batches) {
+                    outcomes.add(workers.submit(() -> replayBatch(batch, dryRun)));
+                }
+                for (Future<Outcome> outcome : outcomes) {
+                    total.add(outcome.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("DLQ replay interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("DLQ replay failed", e.getCause());
+            } finally {
+                workers.shutdownNow();
+            }
+        }
+
+        if (!dryRun) {
+            dlqConsumer.applyReplay(total.republished, total.failures);
+            republishedCounter.increment(total.republished.size());
+            stillFailingCounter.increment(total.failures.size());
+            failedSendCounter.increment(total.failedSends);
+        }
+        long elapsed = System.nanoTime() - start;
+        replayTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        ReplayResult result = new ReplayResult(dryRun, candidates.size(), total.passing,
+                total.republished.size(), total.failingByCategory.values().stream().mapToInt(Integer::intValue).sum(),
+                total.failedSends, total.failingByCategory, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        logger.info("DLQ replay{}: {} candidates, {} passing, {} republished, {} still failing, {} failed sends",
+                dryRun ? " (dry run)" : "", result.candidates(), result.passing(), result.republished(),
+                result.stillFailing(), result.failedSends());
+        return result;
+    }
+
+    private Outcome replayBatch(List<Candidate> batch, boolean dryRun) {
+        Outcome outcome = new Outcome();
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (Candidate candidate : batch) {
+            String payload = candidate.payload();
+            OrderValidator.Verdict verdict = orderValidator.check(payload);
+            if (!verdict.isValid()) {
+                outcome.failingByCategory.merge(verdict.category(), 1, Integer::sum);
+                outcome.failures.put(candidate.entry().getId(),
+                        new DlqConsumer.ReplayFailure(candidate.editedPayload(), verdict.reason(), verdict.category()));
+                continue;
+            }
+            outcome.passing++;
+            if (dryRun) {
+                continue;
+            }
+            String id = candidate.entry().getId();
+            // A replay is deliberate: the input consumer must not drop it as a duplicate of the failed attempt
+            orderDeduplicator.forget(verdict.order().getOrderId());
+            try {
+                pending.add(messageProducerService.sendToInputTopic(payload).handle((result, error) -> {
+                    if (error == null) {
+                        outcome.addRepublished(id);
+                    } else {
+                        logger.error("Error replaying DLQ message {}", id, error);
+                        outcome.addFailedSend();
+                    }
+                    return null;
+                }));
+            } catch (RuntimeException e) {
+                logger.error("Error replaying DLQ message {}", id, e);
+                outcome.addFailedSend();
+            }
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        return outcome;
+    }
+
+    private static java.util.concurrent.ThreadFactory replayThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "replay-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * @param editedPayload corrected payload to replay instead of the stored one, or null
+     */
+    private record Candidate(DlqMessage entry, String editedPayload) {
+
+        String payload() {
+            return editedPayload != null ? editedPayload : entry.getOriginalMessage();
+        }
+    }
+
+    /**
+     * Results of one batch, later merged into the total; send callbacks update it from producer threads.
+     */
+    private static final class Outcome {
+        private final Set<String> republished = new HashSet<>();
+        private final Map<String, DlqConsumer.ReplayFailure> failures = new HashMap<>();
+        private final Map<ErrorCategory, Integer> failingByCategory = new EnumMap<>(ErrorCategory.class);
+        private int passing;
+        private int failedSends;
+
+        private synchronized void addRepublished(String id) {
+            republished.add(id);
+        }
+
+        private synchronized void addFailedSend() {
+            failedSends++;
+        }
+
+        private synchronized void add(Outcome batch) {
+            republished.addAll(batch.republished);
+            failures.putAll(batch.failures);
+            batch.failingByCategory.forEach((category, count) -> failingByCategory.merge(category, count, Integer::sum));
+            passing += batch.passing;
+            failedSends += batch.failedSends;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.Order;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+@Component
+@org.springframework.core.annotation.Order(EnrichmentHandler.ORDER)
+public class EnrichmentHandler implements OrderHandler {
+
+    public static final int ORDER = 100;
+
+    @Override
+    public String getStageName() {
+        return "enrichment";
+    }
+
+    @Override
+    public ErrorCategory getFailureCategory() {
+        return ErrorCategory.ENRICHMENT_ERROR;
+    }
+
+    @Override
+    public void handle(Order order, String message) {
+        // Normalize identifiers and round the amount to cents before anything is stored or forwarded
+        order.setOrderId(order.getOrderId().trim());
+        order.setUserId(order.getUserId().trim());
+        order.setAmount(BigDecimal.valueOf(order.getAmount()).setScale(2, RoundingMode.HALF_UP).doubleValue());
+    }
+}
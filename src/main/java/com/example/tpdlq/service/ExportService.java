@@ -0,0 +1,267 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.DlqMessage;
+import com.example.tpdlq.model.ExportFilter;
+import com.example.tpdlq.model.ExportResult;
+import com.example.tpdlq.model.ValidMessage;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams DLQ entries, and optionally the valid message window, as gzip-compressed files.
+ * <p>
+ * Entries are read through the stores' snapshot iterators and encoded one at a time, so an export
+ * holds at most one row group in memory whatever the backlog size and never blocks the consumers.
+ * Two layouts are written:
+ * <ul>
+ *   <li>{@link Format#JSONL}: one JSON object per entry, tagged with its {@code store}</li>
+ *   <li>{@link Format#COLUMNAR}: one JSON object per row group of {@code export.row-group-size}
+ *       entries of one store, holding an array per column</li>
+ * </ul>
+ */
+@Service
+public class ExportService {
+
+    public enum Format {
+        JSONL(".jsonl.gz"),
+        COLUMNAR(".columnar.json.gz");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+    private static final Pattern FILE_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final List<Column<DlqMessage>> DLQ_COLUMNS = List.of(
+            new Column<>("id", DlqMessage::getId),
+            new Column<>("timestamp", m -> m.getTimestamp().toString()),
+            new Column<>("category", m -> m.getCategory() != null ? m.getCategory().name() : null),
+            new Column<>("reason", DlqMessage::getReason),
+            new Column<>("replayAttempts", DlqMessage::getReplayAttempts),
+            new Column<>("originalMessage", DlqMessage::getOriginalMessage));
+    private static final List<Column<ValidMessage>> VALID_COLUMNS = List.of(
+            new Column<>("orderId", ValidMessage::getOrderId),
+            new Column<>("userId", ValidMessage::getUserId),
+            new Column<>("amount", ValidMessage::getAmount),
+            new Column<>("timestamp", m -> m.getTimestamp().toString()),
+            new Column<>("originalMessage", ValidMessage::getOriginalMessage));
+
+    private record Column<T>(String name, Function<T, Object> value) {
+    }
+
+    private final DlqConsumer dlqConsumer;
+    private final ValidMessageStore validMessageStore;
+    private final Path directory;
+    private final int bufferBytes;
+    private final int rowGroupSize;
+    // Lines are terminated explicitly instead of separating root values with a space
+    private final JsonFactory jsonFactory = new JsonFactory()
+            .setRootValueSeparator(null)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final Counter dlqExported;
+    private final Counter validExported;
+    private final Timer exportTimer;
+
+    public ExportService(DlqConsumer dlqConsumer,
+                         ValidMessageStore validMessageStore,
+                         MeterRegistry meterRegistry,
+                         @Value("${export.directory:./data/exports}") String directory,
+                         @Value("${export.buffer-bytes:65536}") int bufferBytes,
+                         @Value("${export.row-group-size:1000}") int rowGroupSize) {
+        if (bufferBytes < 1 || rowGroupSize < 1) {
+            throw new IllegalArgumentException("export.buffer-bytes and export.row-group-size must be positive");
+        }
+        this.dlqConsumer = dlqConsumer;
+        this.validMessageStore = validMessageStore;
+        this.directory = Path.of(directory).toAbsolutePath().normalize();
+        this.bufferBytes = bufferBytes;
+        this.rowGroupSize = rowGroupSize;
+        this.dlqExported = meterRegistry.counter("tpdlq_export_records_total", "store", "dlq");
+        this.validExported = meterRegistry.counter("tpdlq_export_records_total", "store", "valid");
+        this.exportTimer = meterRegistry.timer("tpdlq_export_duration");
+    }
+
+    /**
+     * Writes a complete gzip stream to {@code out}; the caller closes it.
+     */
+    public ExportResult export(ExportFilter filter, Format format, OutputStream out) throws IOException {
+        return export(filter, format, out, null);
+    }
+
+    /**
+     * Writes the export below {@code export.directory}. The file appears atomically once complete.
+     *
+     * @param fileName plain file name without directories, or null for a timestamped default
+     * @throws IllegalArgumentException if the name would leave the export directory
+     */
+    public ExportResult exportToFile(ExportFilter filter, Format format, String fileName) throws IOException {
+        String name = fileName == null || fileName.isBlank()
+                ? "dlq-" + LocalDateTime.now().format(FILE_TIMESTAMP) + format.getExtension()
+                : fileName.strip();
+        if (!FILE_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid export file name: " + name);
+        }
+        Files.createDirectories(directory);
+        Path file = directory.resolve(name);
+        Path tmp = directory.resolve(name + ".tmp");
+        ExportResult result;
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            result = export(filter, format, out, file.toString());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Exported {} DLQ and {} valid entries to {} ({} bytes)",
+                result.dlqRecords(), result.validRecords(), file, result.bytes());
+        return result;
+    }
+
+    private ExportResult export(ExportFilter filter, Format format, OutputStream out, String path) throws IOException {
+        long start = System.nanoTime();
+        CountingOutputStream counting = new CountingOutputStream(out);
+        GZIPOutputStream gzip = new GZIPOutputStream(counting, bufferBytes);
+        long dlqRecords;
+        long validRecords = 0;
+        try (JsonGenerator json = jsonFactory.createGenerator(gzip)) {
+            dlqRecords = write(json, format, "dlq", dlqConsumer.iterator(), filter::matches, DLQ_COLUMNS);
+            if (filter.includeValid()) {
+                validRecords = write(json, format, "valid", validMessageStore.iterator(), filter::matches,
+                        VALID_COLUMNS);
+            }
+        }
+        gzip.finish();
+        gzip.flush();
+        long elapsed = System.nanoTime() - start;
+        exportTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        dlqExported.increment(dlqRecords);
+        validExported.increment(validRecords);
+        return new ExportResult(path, dlqRecords, validRecords, counting.count, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private <T> long write(JsonGenerator json, Format format, String store, Iterator<T> entries,
+                           Predicate<T> filter, List<Column<T>> columns) throws IOException {
+        List<T> rowGroup = new ArrayList<>(format == Format.COLUMNAR ? rowGroupSize : 0);
+        long written = 0;
+        while (entries.hasNext()) {
+            T entry = entries.next();
+            if (!filter.test(entry)) {
+                continue;
+            }
+            written++;
+            if (format == Format.JSONL) {
+                writeRow(json, store, entry, columns);
+            } else {
+                rowGroup.add(entry);
+                if (rowGroup.size() == rowGroupSize) {
+                    writeRowGroup(json, store, rowGroup, columns);
+                }
+            }
+        }
+        if (!rowGroup.isEmpty()) {
+            writeRowGroup(json, store, rowGroup, columns);
+        }
+        return written;
+    }
+
+    private static <T> void writeRow(JsonGenerator json, String store, T entry, List<Column<T>> columns)
+            throws IOException {
+        json.writeStartObject();
+        json.writeStringField("store", store);
+        for (Column<T> column : columns) {
+            json.writeFieldName(column.name());
+            writeValue(json, column.value().apply(entry));
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private static <T> void writeRowGroup(JsonGenerator json, String store, List<T> rowGroup, List<Column<T>> columns)
+            throws IOException {
+        json.writeStartObject();
+        json.writeStringField("store", store);
+        json.writeNumberField("rows", rowGroup.size());
+        json.writeObjectFieldStart("columns");
+        for (Column<T> column : columns) {
+            json.writeArrayFieldStart(column.name());
+            for (T entry : rowGroup) {
+                writeValue(json, column.value().apply(entry));
+            }
+            json.writeEndArray();
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+        json.writeRaw('\n');
+        rowGroup.clear();
+    }
+
+    private static void writeValue(JsonGenerator json, Object value) throws IOException {
+        if (value == null) {
+            json.writeNull();
+        } else if (value instanceof Double number) {
+            json.writeNumber(number);
+        } else {
+            json.writeString(value.toString());
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
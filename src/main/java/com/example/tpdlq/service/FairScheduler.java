@@ -0,0 +1,489 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.MainConsumer;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Fairness layer between the input listener and order processing, keyed on {@code userId}.
+ * <p>
+ * Each key has a token bucket ({@code fairness.rate-per-second}, {@code fairness.burst}) packed
+ * into a single {@link AtomicLong} and refilled lazily with CAS. Admitted messages wait in a
+ * per-key sub-queue; dispatcher threads serve the non-empty sub-queues with deficit round-robin,
+ * taking up to {@code fairness.quantum} x weight messages per key and turn. A key that is out of
+ * tokens or whose sub-queue is full has its messages sent to the overflow topic instead, so one
+ * noisy user cannot delay everybody else. Messages without a readable userId share one key.
+ * <p>
+ * The overflow topic is drained back in through {@link #resubmit(String)}, at each user's rate and
+ * only while the scheduler is at most half full, so live input keeps priority. The overflow listener
+ * never blocks: a record that cannot be admitted yet is parked at the end of the overflow topic again
+ * and the overflow container is paused, until a token is due or the dispatchers have made room.
+ */
+@Component
+public class FairScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(FairScheduler.class);
+
+    static final String ANONYMOUS_KEY = "";
+
+    // Bucket state: refill time (ms since start) in the high 40 bits, milli-tokens in the low 24
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long ONE_TOKEN = 1000;
+
+    private final MessageProducerService messageProducerService;
+    private final boolean enabled;
+    private final long ratePerSecond;
+    private final long burstMilliTokens;
+    private final int perKeyCapacity;
+    private final int maxQueued;
+    private final int quantum;
+    private final int dispatcherThreads;
+    private final Map<String, Integer> weights;
+    private final Supplier<MessageListenerContainer> overflowContainer;
+    private final Clock clock;
+    private final long startMillis;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    // Sub-queues and the round-robin ring of non-empty ones, guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Map<String, KeyQueue> queues = new HashMap<>();
+    private final ArrayDeque<KeyQueue> active = new ArrayDeque<>();
+    private int queued;
+
+    private final List<Thread> dispatchers = new ArrayList<>();
+    private volatile boolean running;
+
+    // Overflow container paused by resubmit(), resumed once retry time has come and there is room
+    private volatile boolean overflowPaused;
+    private volatile long overflowRetryAt;
+
+    private final Counter rateLimitedCounter;
+    private final Counter queueFullCounter;
+    private final Counter drainedCounter;
+    private final Counter requeuedCounter;
+    private final Timer waitTimer;
+
+    @Autowired
+    public FairScheduler(MessageProducerService messageProducerService,
+                         MeterRegistry meterRegistry,
+                         @Value("${fairness.enabled:false}") boolean enabled,
+                         @Value("${fairness.rate-per-second:100}") long ratePerSecond,
+                         @Value("${fairness.burst:200}") long burst,
+                         @Value("${fairness.per-key-queue:500}") int perKeyCapacity,
+                         @Value("${fairness.max-queued:10000}") int maxQueued,
+                         @Value("${fairness.quantum:8}") int quantum,
+                         @Value("${fairness.dispatcher-threads:1}") int dispatcherThreads,
+                         @Value("${fairness.weights:}") String weights,
+                         KafkaListenerEndpointRegistry registry) {
+        this(messageProducerService, meterRegistry, enabled, ratePerSecond, burst, perKeyCapacity, maxQueued,
+                quantum, dispatcherThreads, parseWeights(weights),
+                () -> registry.getListenerContainer(MainConsumer.OVERFLOW_LISTENER_ID), Clock.systemUTC());
+    }
+
+    FairScheduler(MessageProducerService messageProducerService, MeterRegistry meterRegistry, boolean enabled,
+                  long ratePerSecond, long burst, int perKeyCapacity, int maxQueued, int quantum,
+                  int dispatcherThreads, Map<String, Integer> weights,
+                  Supplier<MessageListenerContainer> overflowContainer, Clock clock) {
+        this.messageProducerService = messageProducerService;
+        this.enabled = enabled;
+        this.ratePerSecond = ratePerSecond;
+        this.burstMilliTokens = Math.min(burst * ONE_TOKEN, TOKEN_MASK);
+        this.perKeyCapacity = perKeyCapacity;
+        this.maxQueued = maxQueued;
+        this.quantum = quantum;
+        this.dispatcherThreads = dispatcherThreads;
+        this.weights = weights;
+        this.overflowContainer = overflowContainer;
+        this.clock = clock;
+        this.startMillis = clock.millis();
+        this.rateLimitedCounter = meterRegistry.counter("tpdlq_fairness_overflow_total", "reason", "rate");
+        this.queueFullCounter = meterRegistry.counter("tpdlq_fairness_overflow_total", "reason", "queue");
+        this.drainedCounter = meterRegistry.counter("tpdlq_fairness_overflow_drained_total");
+        this.requeuedCounter = meterRegistry.counter("tpdlq_fairness_overflow_total", "reason", "retry");
+        this.waitTimer = meterRegistry.timer("tpdlq_fairness_wait");
+        meterRegistry.gauge("tpdlq_fairness_queued", this, FairScheduler::getQueued);
+        meterRegistry.gauge("tpdlq_fairness_active_keys", this, FairScheduler::getActiveKeys);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts the dispatcher threads that hand admitted messages to {@code target}.
+     */
+    public synchronized void start(Consumer<String> target) {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < dispatcherThreads; i++) {
+            Thread thread = new Thread(() -> dispatchLoop(target), "fair-dispatcher-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            dispatchers.add(thread);
+        }
+        logger.info("Fair scheduling enabled: {} msg/s per userId, burst {}, weights {}",
+                ratePerSecond, burstMilliTokens / ONE_TOKEN, weights);
+    }
+
+    /**
+     * Admits a message to its userId's sub-queue, or sends it to the overflow topic when that user
+     * is over its rate or queue share. Blocks while the scheduler as a whole is full.
+     *
+     * @return true if the message was queued for processing
+     */
+    public boolean submit(String message) {
+        String key = userIdOf(message);
+        if (!tryAcquire(key)) {
+            rateLimitedCounter.increment();
+            messageProducerService.sendToOverflowTopic(key, message);
+            return false;
+        }
+        lock.lock();
+        try {
+            while (queued >= maxQueued && running) {
+                notFull.awaitUninterruptibly();
+            }
+            KeyQueue queue = queueFor(key);
+            if (queue.items.size() < perKeyCapacity) {
+                enqueue(queue, message);
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        queueFullCounter.increment();
+        messageProducerService.sendToOverflowTopic(key, message);
+        return false;
+    }
+
+    /**
+     * Re-admits a message drained from the overflow topic if its user has a token, the user's
+     * sub-queue has room and the scheduler is at most half full. Never blocks the calling listener:
+     * otherwise the message is parked at the end of the overflow topic again and the overflow
+     * container is paused until {@link #resumeOverflowIfDue()} finds a token due or room made.
+     *
+     * @return true if the message was queued for processing
+     */
+    public boolean resubmit(String message) {
+        String key = userIdOf(message);
+        long retryAt = clock.millis();
+        if (running) {
+            lock.lock();
+            try {
+                KeyQueue queue = queueFor(key);
+                if (queued <= maxQueued / 2 && queue.items.size() < perKeyCapacity) {
+                    if (tryAcquire(key)) {
+                        enqueue(queue, message);
+                        drainedCounter.increment();
+                        return true;
+                    }
+                    // Out of tokens: retry once the next one is due
+                    retryAt += Math.max(1, 1000 / Math.max(1, ratePerSecond));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        requeuedCounter.increment();
+        messageProducerService.sendToOverflowTopic(key, message);
+        if (running) {
+            pauseOverflow(retryAt);
+        }
+        return false;
+    }
+
+    /**
+     * Resumes the overflow container paused by {@link #resubmit(String)} once its retry time has come
+     * and the scheduler is at most half full. Dispatchers call it after making room.
+     */
+    @Scheduled(fixedDelayString = "${fairness.overflow-retry-ms:100}")
+    public void resumeOverflowIfDue() {
+        if (!overflowPaused || clock.millis() < overflowRetryAt || getQueued() > maxQueued / 2) {
+            return;
+        }
+        synchronized (overflowContainer) {
+            if (!overflowPaused) {
+                return;
+            }
+            overflowPaused = false;
+            MessageListenerContainer container = overflowContainer.get();
+            if (container != null) {
+                container.resume();
+            }
+        }
+    }
+
+    private void pauseOverflow(long retryAt) {
+        synchronized (overflowContainer) {
+            overflowRetryAt = Math.max(overflowRetryAt, retryAt);
+            if (overflowPaused) {
+                return;
+            }
+            overflowPaused = true;
+            MessageListenerContainer container = overflowContainer.get();
+            if (container != null) {
+                container.pause();
+            }
+        }
+    }
+
+    // Callers hold lock
+    private KeyQueue queueFor(String key) {
+        return queues.computeIfAbsent(key, k -> new KeyQueue(k, weights.getOrDefault(k, 1)));
+    }
+
+    // Callers hold lock
+    private void enqueue(KeyQueue queue, String message) {
+        queue.items.addLast(new Queued(message, System.nanoTime()));
+        queued++;
+        if (!queue.active) {
+            queue.active = true;
+            active.addLast(queue);
+            notEmpty.signal();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getActiveKeys() {
+        lock.lock();
+        try {
+            return active.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return queued messages over {@code fairness.max-queued}, as a 0..1 ratio
+     */
+    public double getFillRatio() {
+        return enabled ? (double) getQueued() / maxQueued : 0.0;
+    }
+
+    /**
+     * Takes one token from the key's bucket.
+     */
+    boolean tryAcquire(String key) {
+        long now = clock.millis() - startMillis;
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(pack(now, burstMilliTokens)));
+        while (true) {
+            long state = bucket.get();
+            long tokens = refilled(state, now);
+            if (tokens < ONE_TOKEN) {
+                return false;
+            }
+            if (bucket.compareAndSet(state, pack(Math.max(now, state >>> TOKEN_BITS), tokens - ONE_TOKEN))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drops buckets that have refilled completely: an idle user costs nothing until it sends again.
+     */
+    @Scheduled(fixedDelayString = "${fairness.bucket-eviction-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = clock.millis() - startMillis;
+        buckets.values().removeIf(bucket -> refilled(bucket.get(), now) >= burstMilliTokens);
+        lock.lock();
+        try {
+            queues.values().removeIf(q -> !q.active);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        List<Queued> remaining = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+            notFull.signalAll();
+            for (KeyQueue queue : active) {
+                for (Queued item : queue.items) {
+                    remaining.add(item);
+                    keys.add(queue.key);
+                }
+                queue.items.clear();
+                queue.active = false;
+            }
+            active.clear();
+            queued = 0;
+        } finally {
+            lock.unlock();
+        }
+        for (Thread thread : dispatchers) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Offsets of queued messages may already be committed: park them on the overflow topic
+        for (int i = 0; i < remaining.size(); i++) {
+            messageProducerService.sendToOverflowTopic(keys.get(i), remaining.get(i).message());
+        }
+        if (!remaining.isEmpty()) {
+            logger.warn("Moved {} queued messages to the overflow topic on shutdown", remaining.size());
+        }
+    }
+
+    private void dispatchLoop(Consumer<String> target) {
+        List<Queued> batch = new ArrayList<>();
+        while (running) {
+            lock.lock();
+            try {
+                while (active.isEmpty() && running) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (!running) {
+                    return;
+                }
+                KeyQueue queue = active.pollFirst();
+                queue.deficit += quantum * queue.weight;
+                while (queue.deficit > 0 && !queue.items.isEmpty()) {
+                    batch.add(queue.items.pollFirst());
+                    queue.deficit--;
+                }
+                if (queue.items.isEmpty()) {
+                    queue.deficit = 0;
+                    queue.active = false;
+                } else {
+                    active.addLast(queue);
+                    // Let another dispatcher serve the next key meanwhile
+                    notEmpty.signal();
+                }
+                queued -= batch.size();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            resumeOverflowIfDue();
+            long now = System.nanoTime();
+            for (Queued item : batch) {
+                waitTimer.record(now - item.enqueuedAt(), TimeUnit.NANOSECONDS);
+                try {
+                    target.accept(item.message());
+                } catch (Exception e) {
+                    logger.error("Dispatching message failed: {}", item.message(), e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private long refilled(long state, long now) {
+        long last = state >>> TOKEN_BITS;
+        long tokens = state & TOKEN_MASK;
+        long elapsed = Math.max(0, now - last);
+        // rate tokens/s == rate milli-tokens/ms
+        return Math.min(burstMilliTokens, tokens + elapsed * ratePerSecond);
+    }
+
+    private static long pack(long millis, long milliTokens) {
+        return (millis << TOKEN_BITS) | milliTokens;
+    }
+
+    /**
+     * Reads only the top-level {@code userId} field, without building the whole document.
+     */
+    String userIdOf(String message) {
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return ANONYMOUS_KEY;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("userId".equals(field)) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText().trim() : ANONYMOUS_KEY;
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            // Malformed messages share the anonymous key and its rate
+        }
+        return ANONYMOUS_KEY;
+    }
+
+    static Map<String, Integer> parseWeights(String spec) {
+        Map<String, Integer> weights = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return weights;
+        }
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("fairness.weights entries must be userId:weight, got " + entry);
+            }
+            weights.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+        }
+        return weights;
+    }
+
+    private record Queued(String message, long enqueuedAt) {
+    }
+
+    private static final class KeyQueue {
+        private final String key;
+        private final int weight;
+        private final ArrayDeque<Queued> items = new ArrayDeque<>();
+        private int deficit;
+        private boolean active;
+
+        KeyQueue(String key, int weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+}
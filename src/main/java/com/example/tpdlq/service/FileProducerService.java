@@ -1,14 +1,32 @@
 package com.example.tpdlq.service;
 
+import com.example.tpdlq.model.IngestResult;
+import com.example.tpdlq.model.IngestSettings;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class FileProducerService {
@@ -18,45 +36,159 @@ public class FileProducerService {
     @Autowired
     private MessageProducerService messageProducerService;
 
+    @Value("${ingest.reader-buffer-bytes:8192}")
+    private int readerBufferBytes = 8192;
+
+    @Value("${ingest.parallelism:1}")
+    private int parallelism = 1;
+
+    @Value("${ingest.batch-size:500}")
+    private int batchSize = 500;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public void processJsonlFile(String filePath) {
-        logger.info("Starting to process .jsonl file: {}", filePath);
-        int totalLines = 0;
-        int successfulLines = 0;
-        int skippedLines = 0;
+        processJsonlFile(filePath, new IngestSettings(readerBufferBytes, parallelism, batchSize));
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+    /**
+     * Sends every line of the file that is valid JSON to the input topic.
+     * <p>
+     * Lines are read with the configured buffer and handed off in batches. With a parallelism above
+     * one, batches are validated and sent by that many worker threads, at most two batches per
+     * worker queued ahead of the reader. Each batch waits for its acks, which bounds in-flight sends.
+     */
+    public IngestResult processJsonlFile(String filePath, IngestSettings settings) {
+        logger.info("Starting to process .jsonl file: {} ({})", filePath, settings);
+        Counts counts = new Counts();
+        long start = System.nanoTime();
+        ExecutorService workers = settings.parallelism() > 1
+                ? Executors.newFixedThreadPool(settings.parallelism(), ingestThreads())
+                : null;
+        int maxBatches = settings.parallelism() * 2;
+        Semaphore batchSlots = new Semaphore(maxBatches);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Files.newInputStream(Path.of(filePath)), StandardCharsets.UTF_8), settings.readerBufferBytes())) {
+            List<Line> batch = new ArrayList<>(settings.batchSize());
+            int lineNumber = 0;
             String line;
             while ((line = reader.readLine()) != null) {
-                totalLines++;
+                lineNumber++;
+                counts.total.increment();
                 line = line.trim();
-                
+
                 if (line.isEmpty()) {
-                    logger.debug("Skipping empty line at line {}", totalLines);
-                    skippedLines++;
+                    logger.debug("Skipping empty line at line {}", lineNumber);
+                    counts.skipped.increment();
                     continue;
                 }
-
-                try {
-                    // Validate that it's valid JSON by parsing it
-                    objectMapper.readTree(line);
-                    
-                    // Send to Kafka topic
-                    messageProducerService.sendToInputTopic(line);
-                    successfulLines++;
-                    logger.debug("Successfully sent line {} to Kafka", totalLines);
-                } catch (Exception e) {
-                    logger.error("Malformed JSON at line {}: {}. Skipping.", totalLines, line, e);
-                    skippedLines++;
+                batch.add(new Line(lineNumber, line));
+                if (batch.size() >= settings.batchSize()) {
+                    dispatch(batch, workers, batchSlots, counts);
+                    batch = new ArrayList<>(settings.batchSize());
                 }
             }
-
-            logger.info("Finished processing file. Total lines: {}, Successful: {}, Skipped: {}", 
-                    totalLines, successfulLines, skippedLines);
+            if (!batch.isEmpty()) {
+                dispatch(batch, workers, batchSlots, counts);
+            }
+            // All batch slots free again means every batch has been sent and acknowledged
+            batchSlots.acquireUninterruptibly(maxBatches);
         } catch (IOException e) {
             logger.error("Error reading file: {}", filePath, e);
             throw new RuntimeException("Failed to process file: " + filePath, e);
+        } finally {
+            if (workers != null) {
+                workers.shutdown();
+            }
+        }
+
+        IngestResult result = new IngestResult(counts.total.sum(), counts.successful.sum(), counts.skipped.sum(),
+                counts.failedSends.sum(), System.nanoTime() - start, p99Millis(counts.latency));
+        logger.info("Finished processing file. Total lines: {}, Successful: {}, Skipped: {}",
+                result.totalLines(), result.successfulLines(), result.skippedLines());
+        return result;
+    }
+
+    private void dispatch(List<Line> batch, ExecutorService workers, Semaphore batchSlots, Counts counts) {
+        batchSlots.acquireUninterruptibly();
+        if (workers == null) {
+            try {
+                sendBatch(batch, counts);
+            } finally {
+                batchSlots.release();
+            }
+            return;
+        }
+        workers.execute(() -> {
+            try {
+                sendBatch(batch, counts);
+            } finally {
+                batchSlots.release();
+            }
+        });
+    }
+
+    private void sendBatch(List<Line> batch, Counts counts) {
+        List<CompletableFuture<?>> pending = new ArrayList<>(batch.size());
+        for (Line line : batch) {
+            try {
+                // Validate that it's valid JSON by parsing it
+                objectMapper.readTree(line.text());
+
+                // Send to Kafka topic
+                long sentAt = System.nanoTime();
+                pending.add(messageProducerService.sendToInputTopic(line.text()).whenComplete((result, error) -> {
+                    if (error == null) {
+                        counts.latency.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+                        counts.successful.increment();
+                        logger.debug("Successfully sent line {} to Kafka", line.number());
+                    } else {
+                        counts.failedSends.increment();
+                    }
+                }));
+            } catch (Exception e) {
+                logger.error("Malformed JSON at line {}: {}. Skipping.", line.number(), line.text(), e);
+                counts.skipped.increment();
+            }
+        }
+        try {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        } catch (Exception e) {
+            // Failed sends are already counted per record
+            logger.warn("Some sends of a batch failed: {}", e.getMessage());
+        }
+    }
+
+    private static double p99Millis(Timer timer) {
+        for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.99) {
+                return percentile.value(TimeUnit.MILLISECONDS);
+            }
         }
+        return 0.0;
+    }
+
+    private static java.util.concurrent.ThreadFactory ingestThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "ingest-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private record Line(int number, String text) {
+    }
+
+    private static final class Counts {
+        private final LongAdder total = new LongAdder();
+        private final LongAdder successful = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder failedSends = new LongAdder();
+        // Per-call registry: the p99 covers this file only
+        private final Timer latency = Timer.builder("tpdlq_ingest_send_latency")
+                .publishPercentiles(0.99)
+                .register(new SimpleMeterRegistry());
     }
 }
@@ -0,0 +1,211 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.MainConsumer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive flow control for the input listener.
+ * <p>
+ * Every control interval the input container is paused when downstream is saturated (too many
+ * unacknowledged sends, producer buffer nearly full, or a stage or fair-scheduler queue nearly full) and
+ * resumed once all signals drop below the low watermark. In addition, the number of records the
+ * listener may hand off per interval (the batch budget) is tuned AIMD-style against the producer
+ * ack latency target, and the listener pauses itself as soon as the budget is spent. The budget is
+ * only cut in intervals in which sends completed, so a stale latency average cannot pin it at the minimum.
+ */
+@Component
+public class FlowController {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlowController.class);
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final SendTracker sendTracker;
+    private final ProcessingPipeline processingPipeline;
+    private final FairScheduler fairScheduler;
+
+    private final boolean enabled;
+    private final int maxInFlight;
+    private final double highWatermark;
+    private final double lowWatermark;
+    private final double targetLatencyMillis;
+    private final int minBatch;
+    private final int maxBatch;
+    private final int batchStep;
+
+    private final AtomicInteger consumedInInterval = new AtomicInteger();
+    // Only touched by the scheduled evaluate()
+    private long lastCompletedSends;
+    private volatile int batchBudget;
+    private volatile boolean saturated;
+    private volatile boolean budgetExhausted;
+    private final Counter pauseCounter;
+
+    public FlowController(KafkaListenerEndpointRegistry registry,
+                          KafkaTemplate<String, String> kafkaTemplate,
+                          SendTracker sendTracker,
+                          ProcessingPipeline processingPipeline,
+                          FairScheduler fairScheduler,
+                          MeterRegistry meterRegistry,
+                          @Value("${flow.control.enabled:true}") boolean enabled,
+                          @Value("${flow.control.max-in-flight:1000}") int maxInFlight,
+                          @Value("${flow.control.high-watermark:0.8}") double highWatermark,
+                          @Value("${flow.control.low-watermark:0.5}") double lowWatermark,
+                          @Value("${flow.control.target-latency-ms:200}") double targetLatencyMillis,
+                          @Value("${flow.control.min-batch:10}") int minBatch,
+                          @Value("${flow.control.max-batch:500}") int maxBatch) {
+        this.registry = registry;
+        this.kafkaTemplate = kafkaTemplate;
+        this.sendTracker = sendTracker;
+        this.processingPipeline = processingPipeline;
+        this.fairScheduler = fairScheduler;
+        this.enabled = enabled;
+        this.maxInFlight = maxInFlight;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.minBatch = minBatch;
+        this.maxBatch = maxBatch;
+        this.batchStep = Math.max(1, maxBatch / 20);
+        this.batchBudget = maxBatch;
+        this.pauseCounter = meterRegistry.counter("tpdlq_flow_pause_total");
+        meterRegistry.gauge("tpdlq_flow_batch_budget", this, FlowController::getBatchBudget);
+        meterRegistry.gauge("tpdlq_flow_paused", this, c -> c.isPaused() ? 1 : 0);
+    }
+
+    /**
+     * Called by the input listener after each record. Pauses the container once the
+     * batch budget for the current interval is spent.
+     */
+    public void onRecordConsumed() {
+        if (!enabled) {
+            return;
+        }
+        if (consumedInInterval.incrementAndGet() >= batchBudget && !budgetExhausted) {
+            budgetExhausted = true;
+            if (pause()) {
+                logger.debug("Pausing input consumption: batch budget of {} records spent", batchBudget);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${flow.control.interval-ms:200}")
+    public void evaluate() {
+        if (!enabled) {
+            return;
+        }
+        adaptBatchBudget();
+        consumedInInterval.set(0);
+        budgetExhausted = false;
+
+        double pressure = currentPressure();
+        if (!saturated && pressure >= highWatermark) {
+            saturated = true;
+            if (pause()) {
+                logger.info("Pausing input consumption: downstream pressure {}", String.format("%.2f", pressure));
+            }
+        } else if (saturated && pressure <= lowWatermark) {
+            saturated = false;
+        }
+        if (!saturated) {
+            resume();
+        }
+    }
+
+    /**
+     * @return the highest of in-flight sends, producer buffer usage, stage queue fill and fair-scheduler
+     * queue fill, each as a 0..1 ratio
+     */
+    public double currentPressure() {
+        double inFlightRatio = (double) sendTracker.getInFlight() / maxInFlight;
+        double queueFill = Math.max(processingPipeline.getMaxQueueFillRatio(), fairScheduler.getFillRatio());
+        return Math.max(inFlightRatio, Math.max(producerBufferUsage(), queueFill));
+    }
+
+    public int getBatchBudget() {
+        return batchBudget;
+    }
+
+    public boolean isSaturated() {
+        return saturated;
+    }
+
+    public boolean isPaused() {
+        MessageListenerContainer container = container();
+        return container != null && container.isPauseRequested();
+    }
+
+    private void adaptBatchBudget() {
+        double latency = sendTracker.getAverageLatencyMillis();
+        long completedSends = sendTracker.getCompletedCount();
+        // The average only moves when a send completes. Valid orders usually produce no sends, so after a
+        // DLQ burst it would stay high forever; without completions this interval it is not a signal
+        boolean latencyCurrent = completedSends != lastCompletedSends;
+        lastCompletedSends = completedSends;
+        int budget = batchBudget;
+        if (latencyCurrent && latency > targetLatencyMillis) {
+            budget = Math.max(minBatch, budget / 2);
+        } else if (consumedInInterval.get() >= budget) {
+            // Only grow when the budget was actually the limiting factor
+            budget = Math.min(maxBatch, budget + batchStep);
+        }
+        if (budget != batchBudget) {
+            logger.debug("Batch budget {} -> {} (send latency {} ms)", batchBudget, budget, latency);
+            batchBudget = budget;
+        }
+    }
+
+    private double producerBufferUsage() {
+        double total = 0;
+        double available = 0;
+        for (Map.Entry<MetricName, ? extends Metric> entry : kafkaTemplate.metrics().entrySet()) {
+            String name = entry.getKey().name();
+            if ("buffer-total-bytes".equals(name)) {
+                total = toDouble(entry.getValue());
+            } else if ("buffer-available-bytes".equals(name)) {
+                available = toDouble(entry.getValue());
+            }
+        }
+        return total > 0 ? 1.0 - available / total : 0.0;
+    }
+
+    private static double toDouble(Metric metric) {
+        return metric.metricValue() instanceof Number n ? n.doubleValue() : 0.0;
+    }
+
+    private boolean pause() {
+        MessageListenerContainer container = container();
+        if (container != null && !container.isPauseRequested()) {
+            container.pause();
+            pauseCounter.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private void resume() {
+        MessageListenerContainer container = container();
+        if (container != null && container.isPauseRequested()) {
+            container.resume();
+            logger.debug("Resuming input consumption");
+        }
+    }
+
+    private MessageListenerContainer container() {
+        return registry.getListenerContainer(MainConsumer.LISTENER_ID);
+    }
+}
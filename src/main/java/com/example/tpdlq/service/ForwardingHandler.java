@@ -0,0 +1,48 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.Order;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+@org.springframework.core.annotation.Order(ForwardingHandler.ORDER)
+public class ForwardingHandler implements OrderHandler {
+
+    public static final int ORDER = 400;
+
+    private final MessageProducerService messageProducerService;
+
+    // Empty topic disables forwarding
+    @Value("${kafka.topic.valid:}")
+    private String validTopic;
+
+    @Value("${pipeline.forwarding.timeout-ms:5000}")
+    private long timeoutMs;
+
+    public ForwardingHandler(MessageProducerService messageProducerService) {
+        this.messageProducerService = messageProducerService;
+    }
+
+    @Override
+    public String getStageName() {
+        return "forwarding";
+    }
+
+    @Override
+    public ErrorCategory getFailureCategory() {
+        return ErrorCategory.FORWARDING_ERROR;
+    }
+
+    @Override
+    public void handle(Order order, String message) throws Exception {
+        if (validTopic == null || validTopic.isBlank()) {
+            return;
+        }
+        // Wait for the broker ack so a failed forward is reported by this stage
+        messageProducerService.sendToTopic(validTopic, order.getOrderId(), message)
+                .get(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.tpdlq.service;
+
+/**
+ * Open-addressing map from a String key to a primitive sum and count, with a hard cap on
+ * distinct keys. Once the cap is reached, new keys are folded into {@link #OVERFLOW_KEY} so
+ * memory stays bounded however many users show up. Not thread-safe.
+ */
+public class KeyedTotals {
+
+    public static final String OVERFLOW_KEY = "__other__";
+
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(String key, double sum, long count);
+    }
+
+    private final int maxKeys;
+    private String[] keys;
+    private double[] sums;
+    private long[] counts;
+    private int size;
+    private boolean overflowed;
+
+    public KeyedTotals(int maxKeys) {
+        this.maxKeys = maxKeys;
+        allocate(16);
+    }
+
+    public void add(String key, double amount) {
+        add(key, amount, 1);
+    }
+
+    public void add(String key, double amount, long count) {
+        int slot = find(key);
+        if (keys[slot] == null) {
+            boolean overflow = OVERFLOW_KEY.equals(key);
+            // The overflow bucket itself does not count against the cap, so merges are order-independent
+            if (!overflow && size - (overflowed ? 1 : 0) >= maxKeys) {
+                add(OVERFLOW_KEY, amount, count);
+                return;
+            }
+            overflowed |= overflow;
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        sums[slot] += amount;
+        counts[slot] += count;
+    }
+
+    public double sum(String key) {
+        int slot = find(key);
+        return keys[slot] == null ? 0.0 : sums[slot];
+    }
+
+    public long count(String key) {
+        int slot = find(key);
+        return keys[slot] == null ? 0 : counts[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                visitor.visit(keys[i], sums[i], counts[i]);
+            }
+        }
+    }
+
+    public void mergeInto(KeyedTotals target) {
+        forEach(target::add);
+    }
+
+    private int find(String key) {
+        int mask = keys.length - 1;
+        int slot = mix(key.hashCode()) & mask;
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        double[] oldSums = sums;
+        long[] oldCounts = counts;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                sums[slot] = oldSums[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        sums = new double[capacity];
+        counts = new long[capacity];
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+}
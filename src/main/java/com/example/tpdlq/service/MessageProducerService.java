@@ -1,15 +1,20 @@
 package com.example.tpdlq.service;
 
 import com.example.tpdlq.model.ErrorCategory;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class MessageProducerService {
 
@@ -18,22 +23,48 @@ public class MessageProducerService {
     @Autowired
     private KafkaTemplate<String, String> kafkaTemplate;
 
+    @Autowired
+    private SendTracker sendTracker;
+
+    @Autowired
+    private DlqLanes dlqLanes;
+
+    // Present only with kafka.transactions.enabled=true
+    @Autowired(required = false)
+    private TransactionBatcher transactionBatcher;
+
     @Value("${kafka.topic.input}")
     private String inputTopic;
 
     @Value("${kafka.topic.dlq}")
     private String dlqTopic;
 
+    @Value("${kafka.topic.overflow:tp8-input-overflow}")
+    private String overflowTopic;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public void sendToInputTopic(String message) {
+    public CompletableFuture<SendResult<String, String>> sendToInputTopic(String message) {
         logger.info("Sending message to input topic {}: {}", inputTopic, message);
-        kafkaTemplate.send(inputTopic, message);
+        return send(inputTopic, null, message);
+    }
+
+    public CompletableFuture<SendResult<String, String>> sendToTopic(String topic, String key, String message) {
+        logger.debug("Sending message to topic {} with key {}", topic, key);
+        return send(topic, key, message);
+    }
+
+    /**
+     * Parks a message from a user over its fair share; keyed by userId so it stays in order per user.
+     */
+    public void sendToOverflowTopic(String userId, String message) {
+        logger.debug("Sending message for userId {} to overflow topic {}", userId, overflowTopic);
+        send(overflowTopic, userId, message);
     }
 
     public void sendToDlqTopic(String message) {
         logger.warn("Sending message to DLQ topic {}: {}", dlqTopic, message);
-        kafkaTemplate.send(dlqTopic, message);
+        send(dlqTopic, null, message);
     }
 
     public void sendToDlqTopic(String message, String reason) {
@@ -50,12 +81,29 @@ public class MessageProducerService {
             root.put("category", category.name());
 
             String dlqMessage = objectMapper.writeValueAsString(root);
-            logger.warn("Sending message to DLQ topic {} with reason: {} (Category: {})", dlqTopic, reason, category.name());
-            kafkaTemplate.send(dlqTopic, dlqMessage);
+            String topic = dlqLanes.topicFor(category);
+            logger.warn("Sending message to DLQ topic {} with reason: {} (Category: {})", topic, reason, category.name());
+            sendToDlqLane(category, dlqMessage);
         } catch (Exception e) {
             logger.error("Failed to build DLQ message JSON. Falling back to raw. Error: {}", e.getMessage());
-            kafkaTemplate.send(dlqTopic, String.format("{\"reason\":\"%s\",\"originalMessage\":\"%s\",\"category\":\"%s\"}",
+            sendToDlqLane(category, String.format("{\"reason\":\"%s\",\"originalMessage\":\"%s\",\"category\":\"%s\"}",
                     reason, message.replace("\"", "\\\""), category.name()));
         }
     }
+
+    private void sendToDlqLane(ErrorCategory category, String dlqMessage) {
+        // The category header lets the DLQ consumer count and sample without parsing the payload
+        ProducerRecord<String, String> record = new ProducerRecord<>(dlqLanes.topicFor(category), null, dlqMessage);
+        record.headers().add(DlqLanes.CATEGORY_HEADER, category.name().getBytes(StandardCharsets.UTF_8));
+        if (transactionBatcher != null && transactionBatcher.isActive()) {
+            // Input listener thread: the DLQ record commits together with the input offset
+            sendTracker.track(transactionBatcher.send(record));
+            return;
+        }
+        sendTracker.track(kafkaTemplate.send(record));
+    }
+
+    private CompletableFuture<SendResult<String, String>> send(String topic, String key, String message) {
+        return sendTracker.track(kafkaTemplate.send(topic, key, message));
+    }
 }
@@ -0,0 +1,255 @@
+package com.example.tpdlq.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, time-windowed set of recently processed orderIds.
+ * <p>
+ * A pair of rotating Bloom filters answers most lookups without locking: an orderId that was
+ * never marked is rejected there. Possible hits are confirmed against an exact, size-capped
+ * LRU of orderId to mark time, so a Bloom false positive never drops a real order.
+ * <p>
+ * Each filter is sized for {@code idempotency.max-entries} ids. The filters rotate once per window
+ * or as soon as the current one holds that many ids, whichever comes first, so a high order rate
+ * cannot saturate them; the exact map is capped at the same count, so nothing it still holds has
+ * rotated out of both filters.
+ */
+@Component
+public class OrderDeduplicator {
+
+    public enum Mode { DROP, FLAG }
+
+    private static final int HASHES = 7;
+    private static final long MAX_BLOOM_BITS = 1L << 30;
+
+    private final boolean enabled;
+    private final Mode mode;
+    private final int maxEntries;
+    private final long windowMillis;
+    private final int bloomBits;
+    private final Clock clock;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private volatile long rotatedAt;
+
+    // Insertion-ordered: eldest entry is the least recently marked one
+    private final LinkedHashMap<String, Long> recent = new LinkedHashMap<>(16, 0.75f, false);
+
+    private final Counter lookupCounter;
+    private final Counter hitCounter;
+    private final Counter falsePositiveCounter;
+
+    @Autowired
+    public OrderDeduplicator(@Value("${idempotency.enabled:true}") boolean enabled,
+                             @Value("${idempotency.mode:DROP}") Mode mode,
+                             @Value("${idempotency.max-entries:100000}") int maxEntries,
+                             @Value("${idempotency.window:10m}") Duration window,
+                             MeterRegistry meterRegistry) {
+        this(enabled, mode, maxEntries, window, meterRegistry, Clock.systemUTC());
+    }
+
+    OrderDeduplicator(boolean enabled, Mode mode, int maxEntries, Duration window,
+                      MeterRegistry meterRegistry, Clock clock) {
+        this.enabled = enabled;
+        this.mode = mode;
+        this.maxEntries = maxEntries;
+        this.windowMillis = window.toMillis();
+        // ~10 bits per entry with 7 hashes keeps the Bloom false positive rate near 1%
+        this.bloomBits = (int) Math.min(MAX_BLOOM_BITS,
+                Long.highestOneBit(Math.max(1024L, maxEntries * 10L) - 1) << 1);
+        this.clock = clock;
+        this.current = new BloomFilter(bloomBits);
+        this.previous = new BloomFilter(bloomBits);
+        this.rotatedAt = clock.millis();
+        this.lookupCounter = meterRegistry.counter("tpdlq_idempotency_lookups_total");
+        this.hitCounter = meterRegistry.counter("tpdlq_idempotency_hits_total");
+        this.falsePositiveCounter = meterRegistry.counter("tpdlq_idempotency_bloom_false_positives_total");
+        meterRegistry.gauge("tpdlq_idempotency_hit_ratio", this, OrderDeduplicator::getHitRatio);
+        meterRegistry.gauge("tpdlq_idempotency_entries", this, OrderDeduplicator::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return true if this orderId was marked as processed within the window
+     */
+    public boolean isDuplicate(String orderId) {
+        if (!enabled || orderId == null) {
+            return false;
+        }
+        orderId = orderId.trim();
+        lookupCounter.increment();
+        long now = clock.millis();
+        rotateIfNeeded(now);
+        long hash = hash(orderId);
+        if (!current.mightContain(hash) && !previous.mightContain(hash)) {
+            return false;
+        }
+        boolean duplicate;
+        synchronized (recent) {
+            Long markedAt = recent.get(orderId);
+            duplicate = markedAt != null && now - markedAt < windowMillis;
+        }
+        if (duplicate) {
+            hitCounter.increment();
+        } else {
+            falsePositiveCounter.increment();
+        }
+        return duplicate;
+    }
+
+    /**
+     * Records an orderId as processed. Only called once an order was accepted, so a rejected
+     * order can still be fixed and replayed with the same orderId; see {@link #forget(String)}.
+     */
+    public void markProcessed(String orderId) {
+        if (!enabled || orderId == null) {
+            return;
+        }
+        orderId = orderId.trim();
+        long now = clock.millis();
+        rotateIfNeeded(now);
+        current.put(hash(orderId));
+        synchronized (recent) {
+            recent.remove(orderId);
+            recent.put(orderId, now);
+            Iterator<Map.Entry<String, Long>> it = recent.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                if (recent.size() > maxEntries || now - eldest.getValue() >= windowMillis) {
+                    it.remove();
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a mark, e.g. when a pipeline stage failed after the order was accepted, so the order
+     * can be replayed from the DLQ. The Bloom filters keep the id; the exact map decides.
+     */
+    public void forget(String orderId) {
+        if (!enabled || orderId == null) {
+            return;
+        }
+        synchronized (recent) {
+            recent.remove(orderId.trim());
+        }
+    }
+
+    public int size() {
+        synchronized (recent) {
+            return recent.size();
+        }
+    }
+
+    public double getHitRatio() {
+        double lookups = lookupCounter.count();
+        return lookups == 0 ? 0.0 : hitCounter.count() / lookups;
+    }
+
+    public void clear() {
+        synchronized (recent) {
+            recent.clear();
+            current = new BloomFilter(bloomBits);
+            previous = new BloomFilter(bloomBits);
+            rotatedAt = clock.millis();
+        }
+    }
+
+    private void rotateIfNeeded(long now) {
+        if (!rotationDue(now)) {
+            return;
+        }
+        synchronized (recent) {
+            if (rotationDue(now)) {
+                // An id marked in the previous generation is at least one window old, or followed by
+                // max-entries newer ids, once it rotates out
+                previous = current;
+                current = new BloomFilter(bloomBits);
+                rotatedAt = now;
+            }
+        }
+    }
+
+    private boolean rotationDue(long now) {
+        return now - rotatedAt >= windowMillis || current.insertions() >= maxEntries;
+    }
+
+    private static long hash(String key) {
+        // FNV-1a over the chars, finished with the murmur3 64-bit mixer
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final int mask;
+        private final AtomicInteger insertions = new AtomicInteger();
+
+        BloomFilter(int bits) {
+            this.words = new AtomicLongArray(bits >>> 6);
+            this.mask = bits - 1;
+        }
+
+        void put(long hash) {
+            insertions.incrementAndGet();
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (h1 + i * h2) & mask;
+                int word = bit >>> 6;
+                long bitMask = 1L << bit;
+                long prev;
+                do {
+                    prev = words.get(word);
+                } while ((prev & bitMask) == 0 && !words.compareAndSet(word, prev, prev | bitMask));
+            }
+        }
+
+        int insertions() {
+            return insertions.get();
+        }
+
+        boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (h1 + i * h2) & mask;
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
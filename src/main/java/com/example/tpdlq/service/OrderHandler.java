@@ -0,0 +1,31 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.Order;
+
+/**
+ * A single stage of the valid-order processing pipeline.
+ * Handlers are picked up as Spring beans and run in {@link org.springframework.core.annotation.Order} order,
+ * each one on its own bounded queue and executor (see {@link ProcessingPipeline}).
+ */
+public interface OrderHandler {
+
+    /**
+     * @return short stage name, used as the {@code stage} metric tag and in DLQ reasons
+     */
+    String getStageName();
+
+    /**
+     * @return category used when this stage fails and the message is routed to the DLQ
+     */
+    ErrorCategory getFailureCategory();
+
+    /**
+     * Processes a validated order. Throwing any exception stops the pipeline for this order
+     * and sends the original message to the DLQ with {@link #getFailureCategory()}.
+     *
+     * @param order   the validated order (may be mutated by earlier stages)
+     * @param message the original raw message
+     */
+    void handle(Order order, String message) throws Exception;
+}
@@ -1,6 +1,8 @@
 package com.example.tpdlq.service;
 
+import com.example.tpdlq.model.ErrorCategory;
 import com.example.tpdlq.model.Order;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -10,6 +12,52 @@ public class OrderValidator {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderValidator.class);
 
+    /**
+     * Outcome of parsing and validating a raw message.
+     *
+     * @param order    the parsed order, or null if the message is not an order
+     * @param reason   why the message is rejected, or null if it is valid
+     * @param category DLQ category for a rejected message
+     */
+    public record Verdict(Order order, String reason, ErrorCategory category) {
+
+        public boolean isValid() {
+            return reason == null;
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Parses and validates a raw input message exactly as the input consumer does, so callers
+     * such as DLQ replay reach the same verdict without a round trip through the topics.
+     */
+    public Verdict check(String message) {
+        Order order;
+        try {
+            order = objectMapper.readValue(message, Order.class);
+        } catch (Exception e) {
+            return new Verdict(null, "Malformed JSON: " + e.getMessage(), ErrorCategory.MALFORMED_ERROR);
+        }
+        if (order == null) {
+            // The JSON literal null
+            return new Verdict(null, "Malformed JSON: not an order", ErrorCategory.MALFORMED_ERROR);
+        }
+        try {
+            String validationError = validateOrder(order);
+            if (validationError == null) {
+                return new Verdict(order, null, null);
+            }
+            // Extra fields are reported as malformed, every other rule as a validation error
+            ErrorCategory category = validationError.contains("Malformed JSON: unexpected fields")
+                    ? ErrorCategory.MALFORMED_ERROR
+                    : ErrorCategory.VALIDATION_ERROR;
+            return new Verdict(order, validationError, category);
+        } catch (IllegalArgumentException e) {
+            return new Verdict(order, "Validation error: " + e.getMessage(), ErrorCategory.VALIDATION_ERROR);
+        }
+    }
+
     /**
      * Validates an order and returns an error message if validation fails.
      * Rejects orders with extra fields beyond orderId, userId, and amount.
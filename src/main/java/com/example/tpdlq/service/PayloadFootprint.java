@@ -0,0 +1,46 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.CompressedPayload;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running totals of the payload bytes a store retains, compressed and as they would be held as
+ * {@code String}s. Updated on every add and remove, so the gauges never walk the store.
+ */
+public class PayloadFootprint {
+
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong stringBytes = new AtomicLong();
+
+    public PayloadFootprint(String store, MeterRegistry meterRegistry) {
+        List<Tag> tags = List.of(Tag.of("store", store));
+        meterRegistry.gauge("tpdlq_store_payload_bytes", tags, storedBytes);
+        meterRegistry.gauge("tpdlq_store_payload_uncompressed_bytes", tags, stringBytes);
+    }
+
+    public void added(CompressedPayload payload) {
+        if (payload != null) {
+            storedBytes.addAndGet(payload.getStoredBytes());
+            stringBytes.addAndGet(payload.getStringBytes());
+        }
+    }
+
+    public void removed(CompressedPayload payload) {
+        if (payload != null) {
+            storedBytes.addAndGet(-payload.getStoredBytes());
+            stringBytes.addAndGet(-payload.getStringBytes());
+        }
+    }
+
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    public long getStringBytes() {
+        return stringBytes.get();
+    }
+}
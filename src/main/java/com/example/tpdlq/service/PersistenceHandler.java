@@ -0,0 +1,33 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.Order;
+import org.springframework.stereotype.Component;
+
+@Component
+@org.springframework.core.annotation.Order(PersistenceHandler.ORDER)
+public class PersistenceHandler implements OrderHandler {
+
+    public static final int ORDER = 300;
+
+    private final ValidMessageStore validMessageStore;
+
+    public PersistenceHandler(ValidMessageStore validMessageStore) {
+        this.validMessageStore = validMessageStore;
+    }
+
+    @Override
+    public String getStageName() {
+        return "persistence";
+    }
+
+    @Override
+    public ErrorCategory getFailureCategory() {
+        return ErrorCategory.PERSISTENCE_ERROR;
+    }
+
+    @Override
+    public void handle(Order order, String message) {
+        validMessageStore.add(order, message);
+    }
+}
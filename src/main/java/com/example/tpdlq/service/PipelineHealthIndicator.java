@@ -0,0 +1,217 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.DlqLane;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Saturation health of the pipeline, exposed as the {@code pipeline} health contributor and part of the
+ * readiness group ({@code /actuator/health/readiness}).
+ * <p>
+ * A scheduled refresh reads consumer lag per partition from the listener consumers' own
+ * {@code records-lag} metrics, in-flight sends from {@link SendTracker}, stage queue and DLQ lane fill,
+ * the retry lane backlog and the rate at which retry entries arrive from running counts, then caches
+ * the result. Health requests only read the cache, so load balancer probes cost nothing. Any value over
+ * its threshold reports {@code OUT_OF_SERVICE}, which takes the node out of rotation until the next
+ * refresh is back under. The retry backlog is report only: entries only leave it on replay, clear or
+ * eviction, so taking the node out of rotation could not bring it down; its growth rate is the signal.
+ */
+@Component
+public class PipelineHealthIndicator implements HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineHealthIndicator.class);
+
+    /**
+     * One refresh of the saturation signals; {@code breaches} lists every threshold exceeded.
+     */
+    public record Status(Instant checkedAt, Map<String, Long> consumerLag, long maxConsumerLag, int inFlightSends,
+                         double queueFill, double storeFill, int retryBacklog, double retryRate,
+                         List<String> breaches) {
+
+        public boolean isReady() {
+            return breaches.isEmpty();
+        }
+    }
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final SendTracker sendTracker;
+    private final ProcessingPipeline processingPipeline;
+    private final DlqConsumer dlqConsumer;
+    private final DlqLanes dlqLanes;
+    private final Clock clock;
+
+    private final long maxConsumerLag;
+    private final int maxInFlight;
+    private final double maxQueueFill;
+    private final double maxStoreFill;
+    private final double maxRetryRate;
+
+    private volatile Status status;
+    // Only touched by refresh(), which the scheduler never runs concurrently
+    private long lastRetryArrivals;
+    private Instant lastRefresh;
+
+    @Autowired
+    public PipelineHealthIndicator(KafkaListenerEndpointRegistry registry,
+                                   SendTracker sendTracker,
+                                   ProcessingPipeline processingPipeline,
+                                   DlqConsumer dlqConsumer,
+                                   DlqLanes dlqLanes,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${health.readiness.max-consumer-lag:10000}") long maxConsumerLag,
+                                   @Value("${health.readiness.max-in-flight:1000}") int maxInFlight,
+                                   @Value("${health.readiness.max-queue-fill:0.9}") double maxQueueFill,
+                                   @Value("${health.readiness.max-store-fill:1.0}") double maxStoreFill,
+                                   @Value("${health.readiness.max-retry-rate:100}") double maxRetryRate) {
+        this(registry, sendTracker, processingPipeline, dlqConsumer, dlqLanes, meterRegistry, maxConsumerLag,
+                maxInFlight, maxQueueFill, maxStoreFill, maxRetryRate, Clock.systemUTC());
+    }
+
+    PipelineHealthIndicator(KafkaListenerEndpointRegistry registry,
+                            SendTracker sendTracker,
+                            ProcessingPipeline processingPipeline,
+                            DlqConsumer dlqConsumer,
+                            DlqLanes dlqLanes,
+                            MeterRegistry meterRegistry,
+                            long maxConsumerLag,
+                            int maxInFlight,
+                            double maxQueueFill,
+                            double maxStoreFill,
+                            double maxRetryRate,
+                            Clock clock) {
+        this.registry = registry;
+        this.sendTracker = sendTracker;
+        this.processingPipeline = processingPipeline;
+        this.dlqConsumer = dlqConsumer;
+        this.dlqLanes = dlqLanes;
+        this.maxConsumerLag = maxConsumerLag;
+        this.maxInFlight = maxInFlight;
+        this.maxQueueFill = maxQueueFill;
+        this.maxStoreFill = maxStoreFill;
+        this.maxRetryRate = maxRetryRate;
+        this.clock = clock;
+        refresh();
+        meterRegistry.gauge("tpdlq_ready", this, h -> h.getStatus().isReady() ? 1 : 0);
+        meterRegistry.gauge("tpdlq_consumer_lag_max", this, h -> h.getStatus().maxConsumerLag());
+    }
+
+    @Scheduled(fixedDelayString = "${health.refresh-ms:1000}")
+    public void refresh() {
+        Map<String, Long> lag = consumerLag();
+        long maxLag = lag.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        int inFlight = sendTracker.getInFlight();
+        double queueFill = processingPipeline.getMaxQueueFillRatio();
+        double storeFill = 0.0;
+        for (DlqLane lane : DlqLane.values()) {
+            storeFill = Math.max(storeFill, (double) dlqConsumer.getLaneSize(lane) / dlqLanes.capacity(lane));
+        }
+        int retryBacklog = dlqConsumer.getLaneSize(DlqLane.RETRY);
+        Instant now = clock.instant();
+        long retryArrivals = dlqConsumer.getLaneArrivals(DlqLane.RETRY);
+        double retryRate = 0.0;
+        if (lastRefresh != null) {
+            long elapsedMillis = Duration.between(lastRefresh, now).toMillis();
+            if (elapsedMillis > 0) {
+                retryRate = (retryArrivals - lastRetryArrivals) * 1000.0 / elapsedMillis;
+            }
+        }
+        lastRetryArrivals = retryArrivals;
+        lastRefresh = now;
+
+        List<String> breaches = new ArrayList<>();
+        if (maxLag > maxConsumerLag) {
+            breaches.add("consumer lag " + maxLag + " > " + maxConsumerLag);
+        }
+        if (inFlight > maxInFlight) {
+            breaches.add("in-flight sends " + inFlight + " > " + maxInFlight);
+        }
+        if (queueFill > maxQueueFill) {
+            breaches.add(String.format("stage queue fill %.2f > %.2f", queueFill, maxQueueFill));
+        }
+        if (storeFill > maxStoreFill) {
+            breaches.add(String.format("DLQ store fill %.2f > %.2f", storeFill, maxStoreFill));
+        }
+        if (retryRate > maxRetryRate) {
+            breaches.add(String.format("retry entries %.1f/s > %.1f/s", retryRate, maxRetryRate));
+        }
+
+        Status previous = status;
+        status = new Status(now, lag, maxLag, inFlight, queueFill, storeFill, retryBacklog, retryRate,
+                List.copyOf(breaches));
+        if (previous != null && previous.isReady() != status.isReady()) {
+            if (status.isReady()) {
+                logger.info("Pipeline ready again");
+            } else {
+                logger.warn("Pipeline not ready: {}", breaches);
+            }
+        }
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    @Override
+    public Health health() {
+        Status current = status;
+        Health.Builder builder = current.isReady() ? Health.up() : Health.outOfService();
+        return builder
+                .withDetail("checkedAt", current.checkedAt().toString())
+                .withDetail("consumerLag", current.consumerLag())
+                .withDetail("maxConsumerLag", current.maxConsumerLag())
+                .withDetail("inFlightSends", current.inFlightSends())
+                .withDetail("queueFill", current.queueFill())
+                .withDetail("storeFill", current.storeFill())
+                .withDetail("retryBacklog", current.retryBacklog())
+                .withDetail("retryRate", current.retryRate())
+                .withDetail("breaches", current.breaches())
+                .build();
+    }
+
+    /**
+     * Lag per topic-partition as last reported by the listener consumers (updated on every fetch).
+     * Empty for containers that are not running, e.g. with the in-memory transport.
+     */
+    private Map<String, Long> consumerLag() {
+        Map<String, Long> lag = new TreeMap<>();
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            if (!container.isRunning()) {
+                continue;
+            }
+            for (Map<MetricName, ? extends Metric> metrics : container.metrics().values()) {
+                for (Map.Entry<MetricName, ? extends Metric> entry : metrics.entrySet()) {
+                    MetricName name = entry.getKey();
+                    String topic = name.tags().get("topic");
+                    String partition = name.tags().get("partition");
+                    if (!"records-lag".equals(name.name()) || topic == null || partition == null) {
+                        continue;
+                    }
+                    if (entry.getValue().metricValue() instanceof Number n && !Double.isNaN(n.doubleValue())) {
+                        lag.merge(topic + "-" + partition, n.longValue(), Math::max);
+                    }
+                }
+            }
+        }
+        return lag;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.Order;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs validated orders through the ordered {@link OrderHandler} stages.
+ * Each stage owns a bounded queue and a fixed-size executor; a full queue blocks the
+ * upstream stage (or the consumer thread for the first stage) instead of dropping work.
+ * Orders a stage can no longer run because it is shutting down are rejected and sent to the DLQ.
+ */
+@Service
+public class ProcessingPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingPipeline.class);
+
+    // How long a blocked submitter waits for room before checking for shutdown again
+    private static final long QUEUE_OFFER_MS = 100;
+
+    private final MessageProducerService messageProducerService;
+    private final List<Stage> stages;
+
+    public ProcessingPipeline(List<OrderHandler> handlers,
+                              MessageProducerService messageProducerService,
+                              MeterRegistry meterRegistry,
+                              @Value("${pipeline.stage.queue-capacity:1000}") int queueCapacity,
+                              @Value("${pipeline.stage.threads:1}") int threads) {
+        this.messageProducerService = messageProducerService;
+        List<Stage> built = new ArrayList<>();
+        for (OrderHandler handler : handlers) {
+            built.add(new Stage(handler, queueCapacity, threads, meterRegistry));
+        }
+        for (int i = 0; i < built.size() - 1; i++) {
+            built.get(i).next = built.get(i + 1);
+        }
+        this.stages = Collections.unmodifiableList(built);
+        logger.info("Processing pipeline stages: {}", getStageNames());
+    }
+
+    /**
+     * Hands a validated order to the first stage. Blocks while the first stage queue is full.
+     *
+     * @return false if the pipeline is shutting down and the order was not accepted
+     */
+    public boolean submit(Order order, String message) {
+        return submit(order, message, () -> { });
+    }
+
+    /**
+     * Like {@link #submit(Order, String)}; {@code onFailure} runs on the stage thread after the order
+     * was routed to the DLQ by a failing or unavailable stage.
+     */
+    public boolean submit(Order order, String message, Runnable onFailure) {
+        if (stages.isEmpty()) {
+            return true;
+        }
+        return stages.get(0).submit(new Item(order, message, onFailure));
+    }
+
+    public List<String> getStageNames() {
+        return stages.stream().map(s -> s.handler.getStageName()).toList();
+    }
+
+    /**
+     * @return current queue depth per stage, in pipeline order
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        for (Stage stage : stages) {
+            depths.put(stage.handler.getStageName(), stage.executor.getQueue().size());
+        }
+        return depths;
+    }
+
+    /**
+     * @return the highest queue fill ratio (0..1) across all stages
+     */
+    public double getMaxQueueFillRatio() {
+        double max = 0.0;
+        for (Stage stage : stages) {
+            max = Math.max(max, (double) stage.executor.getQueue().size() / stage.capacity);
+        }
+        return max;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Drain stages front to back so in-flight orders can reach the later stages
+        for (Stage stage : stages) {
+            stage.executor.shutdown();
+            try {
+                if (!stage.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    List<Runnable> dropped = stage.executor.shutdownNow();
+                    logger.warn("Stage {} did not drain in time, {} orders sent to the DLQ",
+                            stage.handler.getStageName(), dropped.size());
+                    stage.rejectAll(dropped);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stage.rejectAll(stage.executor.shutdownNow());
+            }
+        }
+    }
+
+    private record Item(Order order, String message, Runnable onFailure) {
+    }
+
+    /**
+     * Queued work keeps its item, so orders drained by {@code shutdownNow()} can still be routed to the DLQ.
+     */
+    private record Task(Stage stage, Item item) implements Runnable {
+
+        @Override
+        public void run() {
+            stage.run(item);
+        }
+    }
+
+    private final class Stage {
+        private final OrderHandler handler;
+        private final int capacity;
+        private final ThreadPoolExecutor executor;
+        private final Counter processedCounter;
+        private final Counter failedCounter;
+        private final Timer timer;
+        private Stage next;
+
+        Stage(OrderHandler handler, int capacity, int threads, MeterRegistry meterRegistry) {
+            this.handler = handler;
+            this.capacity = capacity;
+            String name = handler.getStageName();
+            this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(capacity), namedThreads("pipeline-" + name + "-"),
+                    (task, pool) -> {
+                        // Block the submitter until there is room: backpressure instead of rejection.
+                        // The wait is bounded so a shutdown meanwhile is noticed instead of blocking forever.
+                        try {
+                            while (!pool.isShutdown()) {
+                                if (pool.getQueue().offer(task, QUEUE_OFFER_MS, TimeUnit.MILLISECONDS)) {
+                                    // Shut down while queueing: the workers may be gone, so take it back
+                                    if (pool.isShutdown() && pool.getQueue().remove(task)) {
+                                        break;
+                                    }
+                                    return;
+                                }
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException("Interrupted while waiting for stage " + name, e);
+                        }
+                        throw new RejectedExecutionException("Stage " + name + " is shut down");
+                    });
+            this.processedCounter = meterRegistry.counter("tpdlq_pipeline_stage_processed_total", "stage", name);
+            this.failedCounter = meterRegistry.counter("tpdlq_pipeline_stage_failed_total", "stage", name);
+            this.timer = meterRegistry.timer("tpdlq_pipeline_stage_duration", "stage", name);
+            meterRegistry.gauge("tpdlq_pipeline_stage_queue_depth", List.of(Tag.of("stage", name)),
+                    executor, e -> e.getQueue().size());
+        }
+
+        boolean submit(Item item) {
+            try {
+                executor.execute(new Task(this, item));
+                return true;
+            } catch (RejectedExecutionException e) {
+                logger.error("Stage {} rejected order {}: {}", handler.getStageName(), item.order().getOrderId(), e.getMessage());
+                return false;
+            }
+        }
+
+        private void run(Item item) {
+            long start = System.nanoTime();
+            try {
+                handler.handle(item.order(), item.message());
+            } catch (Exception e) {
+                failedCounter.increment();
+                logger.error("Stage {} failed for message: {}", handler.getStageName(), item.message(), e);
+                messageProducerService.sendToDlqTopic(item.message(),
+                        "Stage " + handler.getStageName() + " failed: " + e.getMessage(),
+                        handler.getFailureCategory());
+                item.onFailure().run();
+                return;
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            processedCounter.increment();
+            if (next != null && !next.submit(item)) {
+                next.reject(item);
+            }
+        }
+
+        private void reject(Item item) {
+            messageProducerService.sendToDlqTopic(item.message(),
+                    "Stage " + handler.getStageName() + " unavailable", handler.getFailureCategory());
+            item.onFailure().run();
+        }
+
+        private void rejectAll(List<Runnable> tasks) {
+            for (Runnable task : tasks) {
+                if (task instanceof Task queued) {
+                    reject(queued.item());
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
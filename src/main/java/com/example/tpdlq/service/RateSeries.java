@@ -0,0 +1,50 @@
+package com.example.tpdlq.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Events per second over the last few minutes, in a ring of one-second buckets.
+ * <p>
+ * Each bucket packs its epoch second (high 32 bits) with its count (low 32 bits) so a bucket is
+ * claimed for a new second and counted in a single CAS; buckets left over from earlier laps of the
+ * ring are ignored when summing.
+ */
+final class RateSeries {
+
+    private static final long COUNT_MASK = 0xFFFF_FFFFL;
+
+    private final AtomicLongArray buckets;
+
+    RateSeries(int maxWindowSeconds) {
+        // One extra bucket for the second in progress, which rates leave out
+        this.buckets = new AtomicLongArray(maxWindowSeconds + 1);
+    }
+
+    void record(long epochSecond) {
+        int index = (int) (epochSecond % buckets.length());
+        while (true) {
+            long current = buckets.get(index);
+            long next = current >>> 32 == epochSecond ? current + 1 : epochSecond << 32 | 1;
+            if (buckets.compareAndSet(index, current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return average events per second over the {@code windowSeconds} complete seconds before {@code nowSecond}
+     */
+    double rate(long nowSecond, int windowSeconds) {
+        if (windowSeconds >= buckets.length()) {
+            throw new IllegalArgumentException("Window longer than the series: " + windowSeconds);
+        }
+        long total = 0;
+        for (long second = nowSecond - windowSeconds; second < nowSecond; second++) {
+            long bucket = buckets.get((int) (second % buckets.length()));
+            if (bucket >>> 32 == second) {
+                total += bucket & COUNT_MASK;
+            }
+        }
+        return (double) total / windowSeconds;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.tpdlq.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks producer sends that have not been acknowledged yet and a moving average of ack latency.
+ * Feeds flow control and health checks without touching the producer internals.
+ */
+@Component
+public class SendTracker {
+
+    // Weight of the newest sample in the latency moving average
+    private static final double ALPHA = 0.1;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private volatile double averageLatencyMillis;
+    private final Timer latencyTimer;
+    private final Counter failureCounter;
+
+    public SendTracker(MeterRegistry meterRegistry) {
+        this.latencyTimer = meterRegistry.timer("tpdlq_producer_send_latency");
+        this.failureCounter = meterRegistry.counter("tpdlq_producer_send_failures_total");
+        meterRegistry.gauge("tpdlq_producer_in_flight", inFlight);
+    }
+
+    public <T> CompletableFuture<T> track(CompletableFuture<T> send) {
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        send.whenComplete((result, ex) -> {
+            inFlight.decrementAndGet();
+            long nanos = System.nanoTime() - start;
+            latencyTimer.record(nanos, TimeUnit.NANOSECONDS);
+            // Racy read-modify-write is acceptable for a smoothing average
+            averageLatencyMillis += ALPHA * (nanos / 1_000_000.0 - averageLatencyMillis);
+            completed.incrementAndGet();
+            if (ex != null) {
+                failureCounter.increment();
+            }
+        });
+        return send;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Only moves when a send completes: without new completions it describes past sends.
+     */
+    public double getAverageLatencyMillis() {
+        return averageLatencyMillis;
+    }
+
+    /**
+     * @return sends completed (acked or failed) since startup; tells whether the average is current
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.DlqMessage;
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.PayloadCodec;
+import com.example.tpdlq.model.ValidMessage;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary file format for store snapshots.
+ * <p>
+ * Layout (big-endian): magic, format version, creation time, DLQ partition offsets, DLQ entries,
+ * valid messages, then a CRC32 of everything before it. Version 2 appends the replay attempt count
+ * to each DLQ entry; version 1 files are still read. Strings are length-prefixed UTF-8
+ * ({@code -1} for null). Files are written to a sibling temp file, forced to disk and moved into
+ * place atomically, so a crash mid-write leaves the previous snapshot intact.
+ */
+public final class SnapshotCodec {
+
+    public record Snapshot(Instant createdAt,
+                           Map<TopicPartition, Long> offsets,
+                           List<DlqMessage> dlqMessages,
+                           List<ValidMessage> validMessages) {
+    }
+
+    private static final int MAGIC = 0x54504451; // "TPDQ"
+    private static final short VERSION = 2;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public static long write(Snapshot snapshot, Path file) throws IOException {
+        ByteBuffer buffer = encode(snapshot);
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return buffer.limit();
+    }
+
+    /**
+     * @param payloadCodec compresses the restored payloads, normally the codec of the stores they go to
+     * @throws IOException if the file cannot be read, is truncated or fails its checksum
+     */
+    public static Snapshot read(Path file, PayloadCodec payloadCodec) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < Integer.BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " has invalid size " + size);
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading
+            }
+            buffer.flip();
+        }
+        return decode(buffer, payloadCodec);
+    }
+
+    static ByteBuffer encode(Snapshot snapshot) {
+        Encoder out = new Encoder();
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putLong(snapshot.createdAt().toEpochMilli());
+
+        out.putInt(snapshot.offsets().size());
+        for (Map.Entry<TopicPartition, Long> entry : snapshot.offsets().entrySet()) {
+            out.putString(entry.getKey().topic());
+            out.putInt(entry.getKey().partition());
+            out.putLong(entry.getValue());
+        }
+
+        out.putInt(snapshot.dlqMessages().size());
+        for (DlqMessage message : snapshot.dlqMessages()) {
+            out.putString(message.getId());
+            out.putString(message.getReason());
+            out.putString(message.getOriginalMessage());
+            out.putString(message.getCategory() != null ? message.getCategory().name() : null);
+            out.putTimestamp(message.getTimestamp());
+            out.putInt(message.getReplayAttempts());
+        }
+
+        out.putInt(snapshot.validMessages().size());
+        for (ValidMessage message : snapshot.validMessages()) {
+            out.putString(message.getOrderId());
+            out.putString(message.getUserId());
+            out.putDouble(message.getAmount());
+            out.putString(message.getOriginalMessage());
+            out.putTimestamp(message.getTimestamp());
+        }
+
+        ByteBuffer buffer = out.buffer;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        out.putInt((int) crc.getValue());
+        out.buffer.flip();
+        return out.buffer;
+    }
+
+    static Snapshot decode(ByteBuffer buffer, PayloadCodec payloadCodec) throws IOException {
+        int bodyLength = buffer.limit() - Integer.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, bodyLength));
+        if ((int) crc.getValue() != buffer.getInt(bodyLength)) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+        buffer.limit(bodyLength);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            short version = buffer.getShort();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            Instant createdAt = Instant.ofEpochMilli(buffer.getLong());
+
+            int offsetCount = buffer.getInt();
+            Map<TopicPartition, Long> offsets = new HashMap<>();
+            for (int i = 0; i < offsetCount; i++) {
+                offsets.put(new TopicPartition(getString(buffer), buffer.getInt()), buffer.getLong());
+            }
+
+            int dlqCount = buffer.getInt();
+            List<DlqMessage> dlqMessages = new ArrayList<>(dlqCount);
+            for (int i = 0; i < dlqCount; i++) {
+                String id = getString(buffer);
+                String reason = getString(buffer);
+                String original = getString(buffer);
+                String category = getString(buffer);
+                DlqMessage message = new DlqMessage(id, reason, payloadCodec.compress(original), toCategory(category),
+                        getTimestamp(buffer));
+                if (version >= 2) {
+                    message.setReplayAttempts(buffer.getInt());
+                }
+                dlqMessages.add(message);
+            }
+
+            int validCount = buffer.getInt();
+            List<ValidMessage> validMessages = new ArrayList<>(validCount);
+            for (int i = 0; i < validCount; i++) {
+                String orderId = getString(buffer);
+                String userId = getString(buffer);
+                double amount = buffer.getDouble();
+                String original = getString(buffer);
+                validMessages.add(new ValidMessage(orderId, userId, amount, payloadCodec.compress(original),
+                        getTimestamp(buffer)));
+            }
+            return new Snapshot(createdAt, offsets, dlqMessages, validMessages);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt snapshot", e);
+        }
+    }
+
+    private static ErrorCategory toCategory(String name) {
+        if (name == null) {
+            return ErrorCategory.UNKNOWN_ERROR;
+        }
+        try {
+            return ErrorCategory.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            // Category removed since the snapshot was written
+            return ErrorCategory.UNKNOWN_ERROR;
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static LocalDateTime getTimestamp(ByteBuffer buffer) {
+        long seconds = buffer.getLong();
+        int nanos = buffer.getInt();
+        return seconds == NO_TIMESTAMP ? null : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    /**
+     * Growable heap buffer; snapshots are built off the consumer threads and written in one go.
+     */
+    private static final class Encoder {
+        private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        void putInt(int value) {
+            ensure(Integer.BYTES).putInt(value);
+        }
+
+        void putShort(short value) {
+            ensure(Short.BYTES).putShort(value);
+        }
+
+        void putLong(long value) {
+            ensure(Long.BYTES).putLong(value);
+        }
+
+        void putDouble(double value) {
+            ensure(Double.BYTES).putDouble(value);
+        }
+
+        void putString(String value) {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes);
+        }
+
+        void putTimestamp(LocalDateTime timestamp) {
+            // LocalDateTime carries no zone: UTC is only used as a lossless epoch mapping
+            ensure(Long.BYTES + Integer.BYTES)
+                    .putLong(timestamp != null ? timestamp.toEpochSecond(ZoneOffset.UTC) : NO_TIMESTAMP)
+                    .putInt(timestamp != null ? timestamp.getNano() : 0);
+        }
+
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.PayloadCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodically snapshots the DLQ list and the valid message window to a local file and restores
+ * them on startup, before the listener containers start.
+ * <p>
+ * The snapshot records the next DLQ offset per partition it covers; on assignment the DLQ
+ * listener seeks there, so a warm restart only reads records newer than the snapshot instead of
+ * replaying the whole topic. Snapshots run on the scheduler thread from copies of the stores and
+ * are skipped when nothing changed.
+ */
+@Service
+@ConditionalOnProperty(name = "snapshot.enabled", havingValue = "true")
+public class SnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotService.class);
+
+    private final DlqConsumer dlqConsumer;
+    private final ValidMessageStore validMessageStore;
+    private final PayloadCodec payloadCodec;
+    private final Path path;
+
+    private long lastDlqChange = -1;
+    private long lastValidChange = -1;
+    private final AtomicLong lastSnapshotBytes = new AtomicLong();
+    private final Timer snapshotTimer;
+    private final Counter failureCounter;
+
+    public SnapshotService(DlqConsumer dlqConsumer,
+                           ValidMessageStore validMessageStore,
+                           PayloadCodec payloadCodec,
+                           MeterRegistry meterRegistry,
+                           @Value("${snapshot.path:./data/tpdlq.snapshot}") Path path) {
+        this.dlqConsumer = dlqConsumer;
+        this.validMessageStore = validMessageStore;
+        this.payloadCodec = payloadCodec;
+        this.path = path;
+        this.snapshotTimer = meterRegistry.timer("tpdlq_snapshot_duration");
+        this.failureCounter = meterRegistry.counter("tpdlq_snapshot_failures_total");
+        meterRegistry.gauge("tpdlq_snapshot_bytes", lastSnapshotBytes);
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (!Files.exists(path)) {
+            logger.info("No snapshot at {}, starting with empty stores", path);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            SnapshotCodec.Snapshot snapshot = SnapshotCodec.read(path, payloadCodec);
+            dlqConsumer.restoreState(new DlqConsumer.State(snapshot.dlqMessages(), snapshot.offsets()));
+            validMessageStore.restore(snapshot.validMessages());
+            lastDlqChange = dlqConsumer.getChangeCount();
+            lastValidChange = validMessageStore.getChangeCount();
+            logger.info("Restored snapshot from {} ({}): {} DLQ messages, {} valid messages, offsets {} in {} ms",
+                    path, snapshot.createdAt(), snapshot.dlqMessages().size(), snapshot.validMessages().size(),
+                    snapshot.offsets(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            // Fall back to the committed consumer offsets, as without a snapshot
+            failureCounter.increment();
+            logger.warn("Ignoring unreadable snapshot {}: {}", path, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${snapshot.interval-ms:30000}", initialDelayString = "${snapshot.interval-ms:30000}")
+    public void scheduledSnapshot() {
+        snapshot();
+    }
+
+    /**
+     * Writes a snapshot if either store changed since the last one.
+     *
+     * @return true if a snapshot was written
+     */
+    public synchronized boolean snapshot() {
+        long dlqChange = dlqConsumer.getChangeCount();
+        long validChange = validMessageStore.getChangeCount();
+        if (dlqChange == lastDlqChange && validChange == lastValidChange) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            DlqConsumer.State state = dlqConsumer.captureState();
+            SnapshotCodec.Snapshot snapshot = new SnapshotCodec.Snapshot(Instant.now(), state.offsets(),
+                    state.messages(), validMessageStore.getAll());
+            lastSnapshotBytes.set(SnapshotCodec.write(snapshot, path));
+            lastDlqChange = dlqChange;
+            lastValidChange = validChange;
+            logger.debug("Wrote snapshot {} ({} bytes)", path, lastSnapshotBytes.get());
+            return true;
+        } catch (IOException e) {
+            failureCounter.increment();
+            logger.error("Failed to write snapshot {}", path, e);
+            return false;
+        } finally {
+            snapshotTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Listener containers are already stopped here, so this captures the final state
+        snapshot();
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.MainConsumer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exactly-once routing for the input listener: DLQ records produced while handling input records
+ * and the input offsets are committed in one Kafka transaction.
+ * <p>
+ * A transaction per record would cost a commit round trip per record, so each listener thread keeps
+ * one transaction open across up to {@code kafka.transactions.batch-size} records or
+ * {@code kafka.transactions.interval-ms}, whichever comes first; idle containers and partition
+ * revocation flush the open batch. If a commit fails the transaction is aborted and the consumer is
+ * rewound to the first record of the batch, so the batch is processed again and nothing it produced
+ * becomes visible to {@code read_committed} readers twice. The container still delivers the rest of
+ * the poll that was in progress; {@link #begin} rejects those records, as the seek delivers them again.
+ * <p>
+ * Only the listener thread's own sends join the transaction. Valid orders go through the
+ * asynchronous pipeline, so forwarding to {@code kafka.topic.valid} stays at-least-once.
+ */
+@Component
+@Profile("!inmemory")
+@ConditionalOnProperty(name = "kafka.transactions.enabled", havingValue = "true")
+public class TransactionBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionBatcher.class);
+
+    /**
+     * The open transaction of one listener thread.
+     */
+    private static final class Batch {
+        private final Producer<String, String> producer;
+        private final Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        private final Map<TopicPartition, Long> firstOffsets = new HashMap<>();
+        private boolean open;
+        private int records;
+        private long startedAt;
+
+        private Batch(Producer<String, String> producer) {
+            this.producer = producer;
+        }
+
+        private void reset() {
+            offsets.clear();
+            firstOffsets.clear();
+            open = false;
+            records = 0;
+        }
+    }
+
+    private final ProducerFactory<String, String> producerFactory;
+    private final int batchSize;
+    private final long intervalNanos;
+    // Kafka producers are thread-safe, but a transaction must only contain the sends of one consumer's records
+    private final ThreadLocal<Batch> batches = new ThreadLocal<>();
+    // Partitions of the thread's consumer rewound after an abort, until the seek position is delivered
+    private final ThreadLocal<Set<TopicPartition>> rewound = ThreadLocal.withInitial(HashSet::new);
+
+    private final Timer commitTimer;
+    private final Counter abortCounter;
+    private final DistributionSummary batchRecords;
+
+    @Autowired
+    public TransactionBatcher(KafkaProperties kafkaProperties,
+                              MeterRegistry meterRegistry,
+                              @Value("${kafka.transactions.id-prefix:tpdlq-tx-}") String transactionIdPrefix,
+                              @Value("${kafka.transactions.batch-size:100}") int batchSize,
+                              @Value("${kafka.transactions.interval-ms:100}") long intervalMs,
+                              @Value("${fairness.enabled:false}") boolean fairnessEnabled) {
+        this(transactionalProducerFactory(kafkaProperties.buildProducerProperties(), transactionIdPrefix),
+                batchSize, Duration.ofMillis(intervalMs), meterRegistry);
+        if (fairnessEnabled) {
+            // The fair scheduler hands records to its own threads, outside the listener's transaction
+            throw new IllegalStateException("kafka.transactions.enabled cannot be combined with fairness.enabled");
+        }
+    }
+
+    public TransactionBatcher(ProducerFactory<String, String> producerFactory, int batchSize, Duration interval,
+                              MeterRegistry meterRegistry) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("kafka.transactions.batch-size must be positive: " + batchSize);
+        }
+        this.producerFactory = producerFactory;
+        this.batchSize = batchSize;
+        this.intervalNanos = interval.toNanos();
+        this.commitTimer = meterRegistry.timer("tpdlq_tx_commit_duration");
+        this.abortCounter = meterRegistry.counter("tpdlq_tx_aborts_total");
+        this.batchRecords = meterRegistry.summary("tpdlq_tx_batch_records");
+    }
+
+    public static DefaultKafkaProducerFactory<String, String> transactionalProducerFactory(Map<String, Object> props,
+                                                                                          String transactionIdPrefix) {
+        DefaultKafkaProducerFactory<String, String> factory = new DefaultKafkaProducerFactory<>(props);
+        factory.setTransactionIdPrefix(transactionIdPrefix);
+        return factory;
+    }
+
+    /**
+     * Called before a record is handled; opens a transaction if the thread has none.
+     *
+     * @return false if the record is left over from a poll whose batch was aborted and rewound; it
+     * must be skipped, as the consumer delivers it again after the rewound records
+     */
+    public boolean begin(ConsumerRecord<?, ?> record, Consumer<?, ?> consumer) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        Set<TopicPartition> rewoundPartitions = rewound.get();
+        if (!rewoundPartitions.isEmpty() && rewoundPartitions.contains(partition)) {
+            // A record from a poll before the seek is at or past the rewound position; fetched ones are below it
+            if (record.offset() >= consumer.position(partition)) {
+                return false;
+            }
+            rewoundPartitions.remove(partition);
+        }
+        Batch batch = batches.get();
+        if (batch == null) {
+            batch = new Batch(producerFactory.createProducer());
+            batches.set(batch);
+        }
+        if (!batch.open) {
+            batch.producer.beginTransaction();
+            batch.open = true;
+            batch.startedAt = System.nanoTime();
+        }
+        batch.firstOffsets.putIfAbsent(partition, record.offset());
+        return true;
+    }
+
+    /**
+     * @return true if the calling thread has an open transaction its sends must join
+     */
+    public boolean isActive() {
+        Batch batch = batches.get();
+        return batch != null && batch.open;
+    }
+
+    public CompletableFuture<RecordMetadata> send(ProducerRecord<String, String> record) {
+        CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+        batches.get().producer.send(record, (metadata, e) -> {
+            if (e == null) {
+                future.complete(metadata);
+            } else {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Called after a record is handled: adds its offset to the transaction and commits once the
+     * batch is full or old enough.
+     */
+    public void complete(ConsumerRecord<?, ?> record, Consumer<?, ?> consumer) {
+        Batch batch = batches.get();
+        batch.offsets.put(new TopicPartition(record.topic(), record.partition()),
+                new OffsetAndMetadata(record.offset() + 1));
+        batch.records++;
+        if (batch.records >= batchSize || System.nanoTime() - batch.startedAt >= intervalNanos) {
+            commit(batch, consumer);
+        }
+    }
+
+    /**
+     * Commits the calling thread's open transaction, if any; must run on the consumer's thread.
+     */
+    public void flush(Consumer<?, ?> consumer) {
+        Batch batch = batches.get();
+        if (batch != null && batch.open) {
+            commit(batch, consumer);
+        }
+    }
+
+    @EventListener(condition = "event.listenerId.startsWith('" + MainConsumer.LISTENER_ID + "')")
+    public void onIdle(ListenerContainerIdleEvent event) {
+        // Published on the consumer thread once no records arrived for the idle interval
+        flush(event.getConsumer());
+    }
+
+    /**
+     * Commits the open batch before partitions are handed to another consumer.
+     */
+    public ConsumerAwareRebalanceListener rebalanceListener() {
+        return new ConsumerAwareRebalanceListener() {
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                flush(consumer);
+            }
+        };
+    }
+
+    private void commit(Batch batch, Consumer<?, ?> consumer) {
+        long start = System.nanoTime();
+        try {
+            batch.producer.sendOffsetsToTransaction(batch.offsets, consumer.groupMetadata());
+            batch.producer.commitTransaction();
+            batchRecords.record(batch.records);
+            batch.reset();
+        } catch (ProducerFencedException | OutOfOrderSequenceException | AuthorizationException e) {
+            // The producer cannot be used any more, not even to abort: replace it on the next record
+            logger.error("Transactional producer failed, replaying {} records", batch.records, e);
+            abortCounter.increment();
+            rewind(batch, consumer);
+            batch.producer.close(Duration.ZERO);
+            batches.remove();
+        } catch (KafkaException e) {
+            logger.error("Transaction commit failed, aborting and replaying {} records", batch.records, e);
+            abortCounter.increment();
+            try {
+                batch.producer.abortTransaction();
+            } catch (KafkaException abortFailure) {
+                logger.error("Abort failed, replacing the transactional producer", abortFailure);
+                batch.producer.close(Duration.ZERO);
+                batches.remove();
+            }
+            rewind(batch, consumer);
+        } finally {
+            commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void rewind(Batch batch, Consumer<?, ?> consumer) {
+        batch.firstOffsets.forEach(consumer::seek);
+        rewound.get().addAll(batch.firstOffsets.keySet());
+        batch.reset();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Open transactions are never committed: the broker aborts them and their records are read again
+        if (producerFactory instanceof DefaultKafkaProducerFactory<String, String> factory) {
+            factory.destroy();
+        }
+    }
+}
@@ -2,24 +2,39 @@ package com.example.tpdlq.service;
 
 import com.example.tpdlq.model.ValidMessage;
 import com.example.tpdlq.model.Order;
+import com.example.tpdlq.model.PayloadCodec;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class ValidMessageStore {
     private final List<ValidMessage> messages = new CopyOnWriteArrayList<>();
     private final int maxSize = 200; // keep last 200 messages
+    private final AtomicLong changeCount = new AtomicLong();
+    private final PayloadCodec payloadCodec;
+    private final PayloadFootprint footprint;
 
-    public void add(Order order, String originalMessage) {
+    public ValidMessageStore(MeterRegistry meterRegistry, PayloadCodec payloadCodec) {
+        this.payloadCodec = payloadCodec;
+        this.footprint = new PayloadFootprint("valid", meterRegistry);
+    }
+
+    public synchronized void add(Order order, String originalMessage) {
         if (order == null) return;
-        ValidMessage vm = new ValidMessage(order.getOrderId(), order.getUserId(), order.getAmount(), originalMessage);
+        ValidMessage vm = new ValidMessage(order.getOrderId(), order.getUserId(), order.getAmount(),
+                payloadCodec.compress(originalMessage));
         messages.add(vm);
+        footprint.added(vm.getPayload());
+        changeCount.incrementAndGet();
         // Trim if exceeding max size
         if (messages.size() > maxSize) {
-            messages.remove(0);
+            footprint.removed(messages.remove(0).getPayload());
         }
     }
 
@@ -27,7 +42,51 @@ public class ValidMessageStore {
         return new ArrayList<>(messages);
     }
 
-    public void clear() {
+    /**
+     * @return an iterator over the window as it is now, without copying it
+     */
+    public Iterator<ValidMessage> iterator() {
+        return messages.iterator();
+    }
+
+    /**
+     * @return the newest {@code limit} messages, oldest first
+     */
+    public synchronized List<ValidMessage> getRecent(int limit) {
+        int size = messages.size();
+        return new ArrayList<>(messages.subList(Math.max(0, size - limit), size));
+    }
+
+    public int size() {
+        return messages.size();
+    }
+
+    /**
+     * Replaces the window with previously snapshotted messages, keeping the newest {@code maxSize}.
+     */
+    public synchronized void restore(List<ValidMessage> restored) {
+        List<ValidMessage> window = restored.size() > maxSize
+                ? restored.subList(restored.size() - maxSize, restored.size())
+                : restored;
+        clear();
+        messages.addAll(window);
+        window.forEach(m -> footprint.added(m.getPayload()));
+    }
+
+    /**
+     * @return a counter that moves on every change to the window, to skip unchanged snapshots
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    public PayloadFootprint getFootprint() {
+        return footprint;
+    }
+
+    public synchronized void clear() {
+        messages.forEach(m -> footprint.removed(m.getPayload()));
         messages.clear();
+        changeCount.incrementAndGet();
     }
 }
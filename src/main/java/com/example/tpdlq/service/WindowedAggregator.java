@@ -0,0 +1,203 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.UserAggregate;
+import com.example.tpdlq.model.WindowSummary;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Incremental per-user aggregation of valid orders over event-time windows.
+ * <p>
+ * Tumbling windows of {@code aggregation.tumbling.size} are kept open until the watermark
+ * (highest event time seen, or wall clock when idle, minus the allowed lateness) passes their end;
+ * they are then closed into a bounded history of {@link WindowSummary}. The sliding window of
+ * {@code aggregation.sliding.size} advancing by {@code aggregation.sliding.slide} is built from
+ * slide-sized panes and merged on query. All per-user state lives in {@link KeyedTotals}, capped
+ * at {@code aggregation.max-keys} users per window or pane.
+ */
+@Component
+public class WindowedAggregator {
+
+    private final long tumblingMillis;
+    private final long slidingMillis;
+    private final long slideMillis;
+    private final long latenessMillis;
+    private final int maxKeys;
+    private final int historySize;
+    private final int topUsers;
+    private final Clock clock;
+
+    private final TreeMap<Long, KeyedTotals> tumbling = new TreeMap<>();
+    private final TreeMap<Long, KeyedTotals> panes = new TreeMap<>();
+    private final Deque<WindowSummary> closed = new ArrayDeque<>();
+    private long maxEventTime = Long.MIN_VALUE;
+    private long watermark = Long.MIN_VALUE;
+
+    private final Counter lateCounter;
+
+    @Autowired
+    public WindowedAggregator(@Value("${aggregation.tumbling.size:1m}") Duration tumblingSize,
+                              @Value("${aggregation.sliding.size:5m}") Duration slidingSize,
+                              @Value("${aggregation.sliding.slide:30s}") Duration slide,
+                              @Value("${aggregation.allowed-lateness:5s}") Duration allowedLateness,
+                              @Value("${aggregation.max-keys:10000}") int maxKeys,
+                              @Value("${aggregation.history-size:60}") int historySize,
+                              @Value("${aggregation.top-users:10}") int topUsers,
+                              MeterRegistry meterRegistry) {
+        this(tumblingSize, slidingSize, slide, allowedLateness, maxKeys, historySize, topUsers,
+                meterRegistry, Clock.systemUTC());
+    }
+
+    WindowedAggregator(Duration tumblingSize, Duration slidingSize, Duration slide, Duration allowedLateness,
+                       int maxKeys, int historySize, int topUsers, MeterRegistry meterRegistry, Clock clock) {
+        if (slidingSize.toMillis() % slide.toMillis() != 0) {
+            throw new IllegalArgumentException("aggregation.sliding.size must be a multiple of aggregation.sliding.slide");
+        }
+        this.tumblingMillis = tumblingSize.toMillis();
+        this.slidingMillis = slidingSize.toMillis();
+        this.slideMillis = slide.toMillis();
+        this.latenessMillis = allowedLateness.toMillis();
+        this.maxKeys = maxKeys;
+        this.historySize = historySize;
+        this.topUsers = topUsers;
+        this.clock = clock;
+        this.lateCounter = meterRegistry.counter("tpdlq_aggregation_late_total");
+        meterRegistry.gauge("tpdlq_aggregation_open_windows", this, a -> a.openWindowCount());
+    }
+
+    public void add(String userId, double amount) {
+        add(userId, amount, clock.millis());
+    }
+
+    public synchronized void add(String userId, double amount, long eventTime) {
+        if (windowStart(eventTime, tumblingMillis) + tumblingMillis <= watermark) {
+            // Its tumbling window is already closed and published
+            lateCounter.increment();
+            return;
+        }
+        tumbling.computeIfAbsent(windowStart(eventTime, tumblingMillis), s -> new KeyedTotals(maxKeys))
+                .add(userId, amount);
+        long pane = windowStart(eventTime, slideMillis);
+        if (pane + slidingMillis > watermark) {
+            panes.computeIfAbsent(pane, s -> new KeyedTotals(maxKeys)).add(userId, amount);
+        }
+        if (eventTime > maxEventTime) {
+            maxEventTime = eventTime;
+            advanceWatermark(eventTime - latenessMillis);
+        }
+    }
+
+    /**
+     * Advances the watermark from the wall clock so windows close even when no orders arrive.
+     */
+    @Scheduled(fixedDelayString = "${aggregation.tick-ms:1000}")
+    public synchronized void tick() {
+        advanceWatermark(clock.millis() - latenessMillis);
+    }
+
+    /**
+     * @return per-user totals over the sliding window ending now, highest total first
+     */
+    public synchronized List<UserAggregate> slidingTotals(int limit) {
+        return top(mergeSlidingPanes(), limit, slidingMillis);
+    }
+
+    public synchronized UserAggregate slidingTotal(String userId) {
+        KeyedTotals merged = mergeSlidingPanes();
+        return toAggregate(userId, merged.sum(userId), merged.count(userId), slidingMillis);
+    }
+
+    /**
+     * @return the currently open tumbling windows followed by the most recently closed ones, newest first
+     */
+    public synchronized List<WindowSummary> tumblingWindows(int limit) {
+        List<WindowSummary> result = new ArrayList<>();
+        for (Map.Entry<Long, KeyedTotals> open : tumbling.descendingMap().entrySet()) {
+            result.add(summarize(open.getKey(), open.getValue()));
+        }
+        Iterator<WindowSummary> it = closed.descendingIterator();
+        while (it.hasNext() && result.size() < limit) {
+            result.add(it.next());
+        }
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    public synchronized int openWindowCount() {
+        return tumbling.size() + panes.size();
+    }
+
+    public synchronized void clear() {
+        tumbling.clear();
+        panes.clear();
+        closed.clear();
+    }
+
+    private void advanceWatermark(long candidate) {
+        if (candidate <= watermark) {
+            return;
+        }
+        watermark = candidate;
+        while (!tumbling.isEmpty() && tumbling.firstKey() + tumblingMillis <= watermark) {
+            Map.Entry<Long, KeyedTotals> done = tumbling.pollFirstEntry();
+            closed.addLast(summarize(done.getKey(), done.getValue()));
+            if (closed.size() > historySize) {
+                closed.removeFirst();
+            }
+        }
+        // A pane is needed until the last sliding window containing it has ended
+        while (!panes.isEmpty() && panes.firstKey() + slidingMillis <= watermark) {
+            panes.pollFirstEntry();
+        }
+    }
+
+    private KeyedTotals mergeSlidingPanes() {
+        long from = windowStart(clock.millis(), slideMillis) + slideMillis - slidingMillis;
+        KeyedTotals merged = new KeyedTotals(maxKeys);
+        for (KeyedTotals pane : panes.tailMap(from, true).values()) {
+            pane.mergeInto(merged);
+        }
+        return merged;
+    }
+
+    private WindowSummary summarize(long start, KeyedTotals totals) {
+        long[] count = new long[1];
+        double[] total = new double[1];
+        totals.forEach((key, sum, c) -> {
+            count[0] += c;
+            total[0] += sum;
+        });
+        return new WindowSummary(Instant.ofEpochMilli(start), Instant.ofEpochMilli(start + tumblingMillis),
+                count[0], total[0], totals.size(), top(totals, topUsers, tumblingMillis));
+    }
+
+    private static List<UserAggregate> top(KeyedTotals totals, int limit, long windowMillis) {
+        List<UserAggregate> all = new ArrayList<>(totals.size());
+        totals.forEach((key, sum, count) -> all.add(toAggregate(key, sum, count, windowMillis)));
+        all.sort(Comparator.comparingDouble(UserAggregate::total).reversed());
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    private static UserAggregate toAggregate(String userId, double sum, long count, long windowMillis) {
+        return new UserAggregate(userId, count, sum, count * 1000.0 / windowMillis);
+    }
+
+    private static long windowStart(long time, long size) {
+        return Math.floorDiv(time, size) * size;
+    }
+}
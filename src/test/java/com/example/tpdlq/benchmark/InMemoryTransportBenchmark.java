@@ -0,0 +1,72 @@
+package com.example.tpdlq.benchmark;
+
+import com.example.tpdlq.inmemory.InMemoryBroker;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Produce/consume throughput of the in-memory transport with several producers and one consumer group.
+ * <p>
+ * Run with {@code mvn test -Dtest=InMemoryTransportBenchmark -Dtpdlq.benchmarks=true}.
+ */
+@EnabledIfSystemProperty(named = "tpdlq.benchmarks", matches = "true")
+class InMemoryTransportBenchmark {
+
+    private static final int RECORDS_PER_PRODUCER = 1_000_000;
+    private static final String PAYLOAD = "{\"orderId\":\"o1\",\"userId\":\"u1\",\"amount\":120.5}";
+
+    @Test
+    void produceConsumeThroughput() throws Exception {
+        for (int producers : new int[] {1, 2, 4}) {
+            for (int capacity : new int[] {1024, 65536}) {
+                run(producers, capacity);
+            }
+        }
+    }
+
+    private void run(int producers, int capacity) throws InterruptedException {
+        InMemoryBroker broker = new InMemoryBroker(capacity, 60_000);
+        TopicPartition tp = new TopicPartition("bench", 0);
+        broker.committed("bench-group", tp);
+        long total = (long) producers * RECORDS_PER_PRODUCER;
+
+        Thread consumer = new Thread(() -> {
+            long seen = 0;
+            while (seen < total) {
+                ConsumerRecord<String, String> record = broker.poll("bench-group", tp);
+                if (record == null) {
+                    LockSupport.parkNanos(1_000);
+                    continue;
+                }
+                broker.commit("bench-group", tp, record.offset() + 1);
+                seen++;
+            }
+        });
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < RECORDS_PER_PRODUCER; i++) {
+                    broker.append(new ProducerRecord<>("bench", PAYLOAD));
+                }
+            }));
+        }
+
+        long start = System.nanoTime();
+        consumer.start();
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+        consumer.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("producers=%d capacity=%-6d records=%d time=%.2fs records/s=%.0f%n",
+                producers, capacity, total, seconds, total / seconds);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.tpdlq.benchmark;
+
+import com.example.tpdlq.service.TransactionBatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaZKBroker;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures exactly-once routing throughput per transaction batch size against an embedded broker:
+ * each input record is consumed, every tenth one produces a DLQ record, and records plus offsets
+ * are committed by {@link TransactionBatcher}. A run with plain sends and auto-committed offsets is
+ * the at-least-once baseline.
+ * <p>
+ * Run with {@code mvn test -Dtest=TransactionBatchBenchmark -Dtpdlq.benchmarks=true}.
+ */
+@EnabledIfSystemProperty(named = "tpdlq.benchmarks", matches = "true")
+class TransactionBatchBenchmark {
+
+    private static final String INPUT = "bench-input";
+    private static final String DLQ = "bench-dlq";
+    private static final int RECORDS = Integer.getInteger("tpdlq.benchmarks.records", 20_000);
+    private static final int[] BATCH_SIZES = {1, 10, 100, 1000};
+    // Small batches commit only a few times per second, so every run is also bounded in time
+    private static final Duration MAX_RUN = Duration.ofSeconds(Integer.getInteger("tpdlq.benchmarks.seconds", 20));
+
+    private static EmbeddedKafkaZKBroker broker;
+
+    @BeforeAll
+    static void startBroker() {
+        // ZooKeeper mode: the embedded KRaft test kit does not complete transaction markers reliably
+        broker = new EmbeddedKafkaZKBroker(1, true, 1, INPUT, DLQ);
+        broker.brokerProperties(Map.of(
+                "transaction.state.log.replication.factor", "1",
+                "transaction.state.log.min.isr", "1"));
+        broker.afterPropertiesSet();
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(producerProps())) {
+            for (int i = 0; i < RECORDS; i++) {
+                producer.send(new ProducerRecord<>(INPUT, "{\"orderId\":\"o" + i + "\",\"userId\":\"u\",\"amount\":1.0}"));
+            }
+        }
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        broker.destroy();
+    }
+
+    @Test
+    void compareBatchSizes() {
+        System.out.printf("%-12s %12s%n", "batch-size", "records/s");
+        System.out.printf("%-12s %12.0f%n", "none", baseline());
+        for (int batchSize : BATCH_SIZES) {
+            System.out.printf("%-12d %12.0f%n", batchSize, transactional(batchSize));
+        }
+    }
+
+    private double baseline() {
+        Map<String, Object> props = consumerProps("bench-baseline");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
+             KafkaProducer<String, String> producer = new KafkaProducer<>(producerProps())) {
+            consumer.subscribe(List.of(INPUT));
+            long start = System.nanoTime();
+            int consumed = 0;
+            while (consumed < RECORDS) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(100))) {
+                    if (record.offset() % 10 == 0) {
+                        producer.send(new ProducerRecord<>(DLQ, record.value()));
+                    }
+                    consumed++;
+                }
+            }
+            producer.flush();
+            consumer.commitSync();
+            return RECORDS / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private double transactional(int batchSize) {
+        DefaultKafkaProducerFactory<String, String> factory =
+                TransactionBatcher.transactionalProducerFactory(producerProps(), "bench-tx-" + batchSize + "-");
+        TransactionBatcher batcher = new TransactionBatcher(factory, batchSize, Duration.ofSeconds(1),
+                new SimpleMeterRegistry());
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProps("bench-tx-" + batchSize))) {
+            consumer.subscribe(List.of(INPUT));
+            long start = System.nanoTime();
+            long deadline = start + MAX_RUN.toNanos();
+            int consumed = 0;
+            while (consumed < RECORDS && System.nanoTime() < deadline) {
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(100));
+                for (ConsumerRecord<String, String> record : records) {
+                    if (System.nanoTime() >= deadline) {
+                        break;
+                    }
+                    if (!batcher.begin(record, consumer)) {
+                        continue;
+                    }
+                    if (record.offset() % 10 == 0) {
+                        batcher.send(new ProducerRecord<>(DLQ, record.value()));
+                    }
+                    batcher.complete(record, consumer);
+                    consumed++;
+                }
+            }
+            batcher.flush(consumer);
+            return consumed / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            batcher.shutdown();
+        }
+    }
+
+    private static Map<String, Object> producerProps() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        return props;
+    }
+
+    private static Map<String, Object> consumerProps(String groupId) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1000);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        return props;
+    }
+}
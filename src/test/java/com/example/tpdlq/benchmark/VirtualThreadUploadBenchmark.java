@@ -0,0 +1,148 @@
+package com.example.tpdlq.benchmark;
+
+import com.example.tpdlq.TpDlqApplication;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Compares platform and virtual threads for many simultaneous uploads through the application itself.
+ * <p>
+ * Each threading mode starts the application on the {@code inmemory} profile with a real web server and
+ * sends {@code tpdlq.benchmarks.uploads} concurrent JSONL uploads to {@code /upload} (Tomcat request
+ * threads, {@code MessageProducerService} sends), then as many {@code /api/messages/process-file} jobs
+ * ({@code jobExecutor}, {@code FileProducerService}). A phase ends when the input listener has consumed
+ * every line, and logs time, lines/s, peak platform threads and heap delta.
+ * <p>
+ * Run with {@code mvn test -Dtest=VirtualThreadUploadBenchmark -Dtpdlq.benchmarks=true}.
+ * The virtual-thread run is skipped on runtimes older than Java 21.
+ */
+@EnabledIfSystemProperty(named = "tpdlq.benchmarks", matches = "true")
+class VirtualThreadUploadBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadUploadBenchmark.class);
+
+    private static final int UPLOADS = Integer.getInteger("tpdlq.benchmarks.uploads", 500);
+    private static final int LINES_PER_UPLOAD = 50;
+    private static final String BOUNDARY = "tpdlq-bench-boundary";
+
+    @TempDir
+    Path dir;
+
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    void compareThreadingModes() throws Exception {
+        run("platform", false);
+        if (Runtime.version().feature() >= 21) {
+            run("virtual", true);
+        } else {
+            logger.info("virtual   skipped (Java {}, needs 21+)", Runtime.version().feature());
+        }
+    }
+
+    private void run(String label, boolean virtual) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TpDlqApplication.class)
+                .profiles("inmemory")
+                // Arguments, not default properties, so they override application.properties
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtual,
+                        // Every upload is accepted: the benchmark measures threading, not shedding
+                        "--flow.control.enabled=false",
+                        "--jobs.executor.queue-capacity=" + UPLOADS,
+                        "--logging.level.com.example.tpdlq=WARN",
+                        "--logging.level.com.example.tpdlq.benchmark=INFO")) {
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            Counter consumed = context.getBean(MeterRegistry.class).counter("tpdlq_messages_processed_total");
+
+            phase(label, "upload", consumed, i -> HttpRequest.newBuilder(URI.create(base + "/upload"))
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofString(multipart(i), StandardCharsets.UTF_8))
+                    .build());
+
+            List<Path> files = new ArrayList<>(UPLOADS);
+            for (int i = 0; i < UPLOADS; i++) {
+                files.add(Files.writeString(dir.resolve(label + "-" + i + ".jsonl"), jsonl(UPLOADS + i)));
+            }
+            phase(label, "process-file", consumed, i -> HttpRequest.newBuilder(URI.create(base + "/api/messages/process-file"))
+                    .header("Content-Type", "text/plain")
+                    .POST(HttpRequest.BodyPublishers.ofString(files.get(i).toString()))
+                    .build());
+        }
+    }
+
+    private void phase(String label, String phase, Counter consumed, IntFunction<HttpRequest> request)
+            throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        threads.resetPeakThreadCount();
+        double target = consumed.count() + (double) UPLOADS * LINES_PER_UPLOAD;
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(UPLOADS);
+        for (int i = 0; i < UPLOADS; i++) {
+            responses.add(http.sendAsync(request.apply(i), HttpResponse.BodyHandlers.discarding()));
+        }
+        int failed = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            // /upload answers with a redirect back to the dashboard
+            if (response.get(10, TimeUnit.MINUTES).statusCode() >= 400) {
+                failed++;
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(10);
+        while (consumed.count() < target && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long heapAfter = memory.getHeapMemoryUsage().getUsed();
+
+        logger.info("{} {} requests={} failed={} lines={} time={}s lines/s={} peakThreads={} heapDelta={}KB",
+                String.format("%-9s", label), String.format("%-12s", phase), UPLOADS, failed,
+                UPLOADS * LINES_PER_UPLOAD, String.format("%.2f", seconds),
+                String.format("%.0f", UPLOADS * LINES_PER_UPLOAD / seconds), threads.getPeakThreadCount(),
+                (heapAfter - heapBefore) / 1024);
+    }
+
+    private static String multipart(int upload) {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"orders-" + upload + ".jsonl\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n"
+                + jsonl(upload) + "\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+    }
+
+    // Distinct orderIds per upload, so the idempotency window does not short-cut the pipeline
+    private static String jsonl(int upload) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < LINES_PER_UPLOAD; i++) {
+            sb.append("{\"orderId\":\"b").append(upload).append('-').append(i).append("\",\"userId\":\"u")
+                    .append(i % 7).append("\",\"amount\":").append(10 + i).append("}\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.tpdlq.consumer;
+
+import com.example.tpdlq.model.DlqMessage;
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.PayloadCodec;
+import com.example.tpdlq.service.DlqLanes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DlqConsumerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private DlqConsumer consumer(int garbageCapacity, int garbageSampleEvery) {
+        DlqLanes lanes = new DlqLanes(registry, true, "tp8-dlq", "tp8-dlq-retry", "tp8-dlq-garbage",
+                100, 100, garbageCapacity, garbageSampleEvery);
+        return new DlqConsumer(registry, lanes, new PayloadCodec());
+    }
+
+    private static ConsumerRecord<String, String> record(String topic, long offset, ErrorCategory category) {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>(topic, 0, offset, null,
+                "{\"reason\":\"r" + offset + "\",\"originalMessage\":\"m" + offset + "\",\"category\":\"" + category.name() + "\"}");
+        record.headers().add(DlqLanes.CATEGORY_HEADER, category.name().getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    @Test
+    void testGarbageLaneIsCountedButOnlySampledIntoTheStore() {
+        DlqConsumer dlq = consumer(100, 10);
+        for (int i = 0; i < 30; i++) {
+            dlq.consumeFromDlq(record("tp8-dlq-garbage", i, ErrorCategory.MALFORMED_ERROR));
+        }
+        assertEquals(3, dlq.getDlqMessages().size());
+        assertEquals(30.0, registry.get("tpdlq_dlq_category_total").tag("category", "MALFORMED_ERROR").counter().count());
+        assertEquals(27.0, registry.get("tpdlq_dlq_lane_sampled_out_total").tag("lane", "GARBAGE").counter().count());
+        // Sampled-out records still advance the offsets covered by a snapshot
+        assertEquals(30L, dlq.captureState().offsets().get(new TopicPartition("tp8-dlq-garbage", 0)));
+    }
+
+    @Test
+    void testLaneCapacityEvictsOldestOfThatLaneOnly() {
+        DlqConsumer dlq = consumer(2, 1);
+        dlq.consumeFromDlq(record("tp8-dlq-retry", 0, ErrorCategory.VALIDATION_ERROR));
+        for (int i = 1; i <= 4; i++) {
+            dlq.consumeFromDlq(record("tp8-dlq-garbage", i, ErrorCategory.MALFORMED_ERROR));
+        }
+        List<String> reasons = dlq.getDlqMessages().stream().map(DlqMessage::getReason).toList();
+        assertEquals(List.of("r0", "r3", "r4"), reasons);
+        assertEquals(2.0, registry.get("tpdlq_dlq_lane_evicted_total").tag("lane", "GARBAGE").counter().count());
+    }
+
+    @Test
+    void testUntaggedRecordsAreParsedAsBefore() {
+        DlqConsumer dlq = consumer(100, 1000);
+        dlq.consumeFromDlq(new ConsumerRecord<>("tp8-dlq", 0, 0, null, "not json"));
+        assertEquals(ErrorCategory.MALFORMED_ERROR, dlq.getDlqMessages().get(0).getCategory());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.tpdlq.inmemory;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryBrokerTest {
+
+    @Test
+    void testOffsetsArePerPartitionAndKeysStick() {
+        InMemoryBroker broker = new InMemoryBroker(16, 100);
+        broker.createTopic("t", 3);
+        ConsumerRecord<String, String> first = broker.append(new ProducerRecord<>("t", "k1", "a"));
+        ConsumerRecord<String, String> second = broker.append(new ProducerRecord<>("t", "k1", "b"));
+        assertEquals(first.partition(), second.partition(), "Same key must land on the same partition");
+        assertEquals(first.offset() + 1, second.offset());
+        assertEquals(2, broker.endOffset(new TopicPartition("t", first.partition())));
+        assertEquals(3, broker.partitionCount("t"));
+    }
+
+    @Test
+    void testGroupsReadIndependently() {
+        InMemoryBroker broker = new InMemoryBroker(16, 100);
+        TopicPartition tp = new TopicPartition("t", 0);
+        broker.append(new ProducerRecord<>("t", "a"));
+        broker.append(new ProducerRecord<>("t", "b"));
+
+        ConsumerRecord<String, String> g1 = broker.poll("g1", tp);
+        assertEquals("a", g1.value());
+        broker.commit("g1", tp, g1.offset() + 1);
+        assertEquals("b", broker.poll("g1", tp).value());
+        assertEquals("a", broker.poll("g2", tp).value(), "A new group starts from the earliest offset");
+        assertEquals(1, broker.committed("g1", tp));
+    }
+
+    @Test
+    void testFullPartitionBlocksProducerForSlowGroup() {
+        InMemoryBroker broker = new InMemoryBroker(4, 50);
+        TopicPartition tp = new TopicPartition("t", 0);
+        broker.committed("slow", tp);
+        for (int i = 0; i < 4; i++) {
+            broker.append(new ProducerRecord<>("t", "v" + i));
+        }
+        assertThrows(TimeoutException.class, () -> broker.append(new ProducerRecord<>("t", "v4")));
+
+        broker.commit("slow", tp, 1);
+        assertEquals(4, broker.append(new ProducerRecord<>("t", "v4")).offset());
+        assertEquals("v1", broker.poll("slow", tp).value());
+    }
+
+    @Test
+    void testWithoutGroupsOldestRecordsAreOverwritten() {
+        InMemoryBroker broker = new InMemoryBroker(4, 50);
+        TopicPartition tp = new TopicPartition("t", 0);
+        for (int i = 0; i < 10; i++) {
+            broker.append(new ProducerRecord<>("t", "v" + i));
+        }
+        assertEquals("v6", broker.poll("late", tp).value());
+    }
+
+    @Test
+    void testPositionOnAnOverwrittenOffsetMovesToTheEarliest() {
+        InMemoryBroker broker = new InMemoryBroker(4, 50);
+        TopicPartition tp = new TopicPartition("t", 0);
+        for (int i = 0; i < 10; i++) {
+            broker.append(new ProducerRecord<>("t", "v" + i));
+        }
+        broker.commit("g", tp, 1);
+
+        ConsumerRecord<String, String> record = broker.poll("g", tp);
+        assertEquals(6, record.offset());
+        assertEquals(6, broker.committed("g", tp));
+    }
+}
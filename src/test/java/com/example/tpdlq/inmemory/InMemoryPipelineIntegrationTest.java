@@ -0,0 +1,120 @@
+package com.example.tpdlq.inmemory;
+
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.DlqMessage;
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.Order;
+import com.example.tpdlq.model.ReplayResult;
+import com.example.tpdlq.service.DlqReplayService;
+import com.example.tpdlq.service.MessageProducerService;
+import com.example.tpdlq.service.ValidMessageStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * Runs MainConsumer -> MessageProducerService -> DlqConsumer end to end on the in-memory transport.
+ */
+@SpringBootTest
+@ActiveProfiles("inmemory")
+@DirtiesContext
+class InMemoryPipelineIntegrationTest {
+
+    @Autowired
+    private MessageProducerService messageProducerService;
+
+    @Autowired
+    private DlqConsumer dlqConsumer;
+
+    @MockitoSpyBean
+    private ValidMessageStore validMessageStore;
+
+    @Autowired
+    private DlqReplayService dlqReplayService;
+
+    @Test
+    void testValidAndInvalidOrdersAreRouted() throws InterruptedException {
+        messageProducerService.sendToInputTopic("{\"orderId\":\"it-1\",\"userId\":\"u1\",\"amount\":12.5}");
+        messageProducerService.sendToInputTopic("{\"orderId\":\"it-2\",\"amount\":15.0}");
+        messageProducerService.sendToInputTopic("{\"orderId\":\"it-3\",\"userId\":\"u3\",\"amount\":10");
+
+        await(() -> dlqConsumer.getDlqMessages().stream().anyMatch(m -> m.getOriginalMessage().contains("it-3"))
+                && isStored("it-1"));
+
+        List<ErrorCategory> categories = dlqConsumer.getDlqMessages().stream()
+                .filter(m -> m.getOriginalMessage().contains("\"it-"))
+                .map(DlqMessage::getCategory).toList();
+        assertTrue(categories.contains(ErrorCategory.VALIDATION_ERROR));
+        assertTrue(categories.contains(ErrorCategory.MALFORMED_ERROR));
+    }
+
+    @Test
+    void testOrderFailedInAStageIsProcessedWhenSentAgain() throws InterruptedException {
+        String message = "{\"orderId\":\"it-stage\",\"userId\":\"u1\",\"amount\":3}";
+        doThrow(new IllegalStateException("store down")).doCallRealMethod()
+                .when(validMessageStore).add(argThat((Order o) -> o != null && "it-stage".equals(o.getOrderId())), any());
+
+        messageProducerService.sendToInputTopic(message);
+        await(() -> findDlq(message, ErrorCategory.PERSISTENCE_ERROR));
+
+        // Same orderId within the idempotency window: it must not be dropped as a duplicate
+        messageProducerService.sendToInputTopic(message);
+        await(() -> isStored("it-stage"));
+    }
+
+    @Test
+    void testReplayedPersistenceErrorReachesTheValidStore() throws InterruptedException {
+        String message = "{\"orderId\":\"it-replay\",\"userId\":\"u1\",\"amount\":4}";
+        doThrow(new IllegalStateException("store down")).doCallRealMethod()
+                .when(validMessageStore).add(argThat((Order o) -> o != null && "it-replay".equals(o.getOrderId())), any());
+
+        messageProducerService.sendToInputTopic(message);
+        await(() -> findDlq(message, ErrorCategory.PERSISTENCE_ERROR));
+        DlqMessage entry = dlqConsumer.getDlqMessages().stream()
+                .filter(m -> message.equals(m.getOriginalMessage())).findFirst().orElseThrow();
+
+        ReplayResult result = dlqReplayService.replay(List.of(entry), false);
+
+        assertEquals(1, result.republished());
+        assertTrue(dlqConsumer.findById(entry.getId()).isEmpty());
+        await(() -> isStored("it-replay"));
+    }
+
+    @Test
+    void testInvalidPayloadReusingAnAcceptedOrderIdReachesTheDlq() throws InterruptedException {
+        messageProducerService.sendToInputTopic("{\"orderId\":\"it-reused\",\"userId\":\"u1\",\"amount\":2}");
+        await(() -> isStored("it-reused"));
+
+        String invalid = "{\"orderId\":\"it-reused\",\"amount\":2}";
+        messageProducerService.sendToInputTopic(invalid);
+        await(() -> findDlq(invalid, ErrorCategory.VALIDATION_ERROR));
+    }
+
+    private boolean findDlq(String message, ErrorCategory category) {
+        return dlqConsumer.getDlqMessages().stream()
+                .anyMatch(m -> m.getCategory() == category && message.equals(m.getOriginalMessage()));
+    }
+
+    private boolean isStored(String orderId) {
+        return validMessageStore.getAll().stream().anyMatch(v -> orderId.equals(v.getOrderId()));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for messages");
+            Thread.sleep(20);
+        }
+    }
+}
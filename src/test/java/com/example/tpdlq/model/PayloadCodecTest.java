@@ -0,0 +1,75 @@
+package com.example.tpdlq.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadCodecTest {
+
+    private final PayloadCodec codec = new PayloadCodec();
+
+    private static String order(int i) {
+        return "{\"orderId\":\"order-" + i + "\",\"userId\":\"user-" + (i % 50)
+                + "\",\"amount\":" + (i * 3.5) + ",\"note\":\"unexpected field in malformed payload\"}";
+    }
+
+    @Test
+    void testSmallPayloadIsKeptAsUtf8() {
+        CompressedPayload payload = codec.compress("{\"orderId\":\"o1\"}");
+        assertFalse(payload.isDeflated());
+        assertEquals("{\"orderId\":\"o1\"}", payload.decode());
+    }
+
+    @Test
+    void testRepetitivePayloadIsDeflatedAndRoundTrips() {
+        String large = "x".repeat(10_000);
+        CompressedPayload payload = codec.compress(large);
+        assertTrue(payload.isDeflated());
+        assertTrue(payload.getStoredBytes() < 200);
+        assertEquals(10_000, payload.getStringBytes());
+        assertEquals(large, payload.decode());
+    }
+
+    @Test
+    void testNonLatinPayloadRoundTrips() {
+        String text = "{\"orderId\":\"注文-1\",\"userId\":\"пользователь\",\"amount\":10,\"note\":\"" + "数据".repeat(40) + "\"}";
+        CompressedPayload payload = codec.compress(text);
+        assertEquals(text.length() * 2, payload.getStringBytes());
+        assertEquals(text, payload.decode());
+    }
+
+    @Test
+    void testTrainedDictionaryShrinksSimilarSmallPayloads() {
+        CompressedPayload[] payloads = new CompressedPayload[PayloadCodec.RETRAIN_EVERY * 2];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = codec.compress(order(i));
+        }
+        CompressedPayload last = payloads[payloads.length - 1];
+        assertTrue(last.isDeflated());
+        assertTrue(last.getStoredBytes() < last.getStringBytes() / 2,
+                "stored " + last.getStoredBytes() + " of " + last.getStringBytes());
+        // Payloads compressed with older dictionary generations stay readable
+        for (int i = 0; i < payloads.length; i++) {
+            assertEquals(order(i), payloads[i].decode());
+        }
+    }
+
+    @Test
+    void testCodecsDoNotShareTheirDictionary() {
+        for (int i = 0; i < PayloadCodec.RETRAIN_EVERY; i++) {
+            codec.compress(order(i));
+        }
+        assertNotNull(codec.compress(order(0)).dictionary);
+
+        PayloadCodec other = new PayloadCodec();
+        CompressedPayload payload = other.compress(order(0));
+        assertNull(payload.dictionary, "a new codec starts without a dictionary");
+        assertEquals(order(0), payload.decode());
+    }
+
+    @Test
+    void testNullPayload() {
+        assertNull(codec.compress(null));
+        assertNull(new DlqMessage("reason", null).getOriginalMessage());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.BulkIngestResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.SendResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BulkIngestServiceTest {
+
+    private final MessageProducerService producer = mock(MessageProducerService.class);
+
+    @BeforeEach
+    void setUp() {
+        when(producer.sendToTopic(eq("tp8-input"), isNull(), anyString()))
+                .thenAnswer(inv -> CompletableFuture.completedFuture(mock(SendResult.class)));
+    }
+
+    private BulkIngestService service(int maxInFlight, int maxErrors) {
+        return new BulkIngestService(producer, new SimpleMeterRegistry(), "tp8-input", 64, maxInFlight, maxErrors);
+    }
+
+    private static ByteArrayInputStream body(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNdjsonRejectsOnlyTheBrokenLines() throws IOException {
+        String body = "\n{\"orderId\":\"o1\",\"userId\":\"u1\",\"amount\":1}\n"
+                + "{\"orderId\":\n"
+                + "\n"
+                + "42\n"
+                + "{\"orderId\":\"o2\",\"userId\":\"u1\",\"amount\":2}\n";
+
+        BulkIngestResult result = service(10, 10).ingest(body(body));
+
+        assertEquals(4, result.received());
+        assertEquals(2, result.accepted());
+        assertEquals(2, result.rejected());
+        assertEquals(List.of(3L, 5L), result.errors().stream().map(BulkIngestResult.LineError::line).toList());
+        assertTrue(result.errors().get(0).error().startsWith("Malformed JSON"));
+        assertEquals("Expected a JSON object", result.errors().get(1).error());
+        verify(producer).sendToTopic("tp8-input", null, "{\"orderId\":\"o1\",\"userId\":\"u1\",\"amount\":1}");
+    }
+
+    @Test
+    void testJsonArrayIsSentElementByElementWithABoundedSendWindow() throws IOException {
+        AtomicInteger outstanding = new AtomicInteger();
+        AtomicInteger maxOutstanding = new AtomicInteger();
+        when(producer.sendToTopic(eq("tp8-input"), isNull(), anyString())).thenAnswer(inv -> {
+            maxOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+            // Acked shortly afterwards on another thread, like a broker round trip
+            return CompletableFuture.supplyAsync(() -> {
+                outstanding.decrementAndGet();
+                return (SendResult<String, String>) null;
+            }, CompletableFuture.delayedExecutor(1, TimeUnit.MILLISECONDS));
+        });
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 50; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"orderId\":\"o").append(i).append("\",\"amount\":1}");
+        }
+        body.append(",\"text\"]");
+
+        BulkIngestResult result = service(4, 10).ingest(body(body.toString()));
+
+        assertEquals(51, result.received());
+        assertEquals(50, result.accepted());
+        assertEquals(List.of(new BulkIngestResult.LineError(51, "Expected a JSON object")), result.errors());
+        assertTrue(maxOutstanding.get() > 1, "sends are pipelined");
+        assertTrue(maxOutstanding.get() <= 4, "at most bulk.max-in-flight unacked sends");
+        verify(producer).sendToTopic("tp8-input", null, "{\"orderId\":\"o7\",\"amount\":1}");
+    }
+
+    @Test
+    void testSyntaxErrorInsideAnArrayEndsTheRequest() throws IOException {
+        BulkIngestResult result = service(10, 10).ingest(
+                body("[{\"orderId\":\"o1\"}, {\"orderId\": }, {\"orderId\":\"o3\"}]"));
+
+        assertEquals(2, result.received());
+        assertEquals(1, result.accepted());
+        assertEquals(2, result.errors().get(0).line());
+        assertTrue(result.errors().get(0).error().contains("rest of the body ignored"));
+    }
+
+    @Test
+    void testFailedSendsAreRejectedAndErrorListIsCapped() throws IOException {
+        when(producer.sendToTopic(eq("tp8-input"), isNull(), anyString()))
+                .thenAnswer(inv -> CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        String body = "{\"orderId\":\"a\"}\n{\"orderId\":\"b\"}\n{\"orderId\":\"c\"}\n";
+
+        BulkIngestResult result = service(10, 2).ingest(body(body));
+
+        assertEquals(0, result.accepted());
+        assertEquals(3, result.rejected());
+        assertEquals(2, result.errors().size());
+        assertTrue(result.errorsTruncated());
+        assertEquals("Send failed: broker down", result.errors().get(0).error());
+    }
+}
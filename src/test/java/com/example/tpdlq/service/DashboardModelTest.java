@@ -0,0 +1,88 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.Order;
+import com.example.tpdlq.model.PayloadCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DashboardModelTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DlqConsumer dlqConsumer = new DlqConsumer(meterRegistry, new DlqLanes(meterRegistry, false,
+            "tp8-dlq", "tp8-dlq-retry", "tp8-dlq-garbage", 100, 100, 100, 1), new PayloadCodec());
+    private final ValidMessageStore validStore = new ValidMessageStore(meterRegistry, new PayloadCodec());
+    private final DashboardModel model = new DashboardModel(dlqConsumer, validStore, Duration.ofSeconds(1), 2, clock);
+
+    private void dlq(long offset, String category) {
+        dlqConsumer.consumeFromDlq(new ConsumerRecord<>("tp8-dlq", 0, offset, null,
+                "{\"reason\":\"r\",\"originalMessage\":\"m" + offset + "\",\"category\":\"" + category + "\"}"));
+    }
+
+    @Test
+    void testViewIsCachedUntilStaleAndEtagOnlyChangesWithContent() {
+        model.record(DashboardModel.Event.PROCESSED);
+        DashboardModel.Snapshot first = model.current();
+        assertEquals(1, first.view().processed());
+
+        model.record(DashboardModel.Event.PROCESSED);
+        assertSame(first, model.current(), "served from cache within max staleness");
+
+        clock.advance(Duration.ofSeconds(1));
+        DashboardModel.Snapshot second = model.current();
+        assertEquals(2, second.view().processed());
+        assertNotEquals(first.etag(), second.etag());
+
+        clock.advance(Duration.ofMillis(1500));
+        // Still the same rates: both events fall in the same 1m/5m windows
+        assertEquals(second.etag(), model.current().etag());
+    }
+
+    @Test
+    void testCategoryBreakdownAndRecentWindowsFollowTheStores() {
+        dlq(0, "VALIDATION_ERROR");
+        dlq(1, "VALIDATION_ERROR");
+        dlq(2, "MALFORMED_ERROR");
+        validStore.add(new Order("o1", "u1", 1.0), "{}");
+
+        DashboardModel.Snapshot snapshot = model.current();
+        assertEquals(Map.of("ValidationError", 2, "MalformedError", 1), snapshot.view().dlqByCategory());
+        assertEquals(3, snapshot.view().dlqStored());
+        assertEquals(2, snapshot.recentDlq().size());
+        assertEquals("m2", snapshot.recentDlq().get(1).getOriginalMessage());
+        assertEquals(1, snapshot.recentValid().size());
+
+        dlqConsumer.removeById(snapshot.recentDlq().get(1).getId());
+        clock.advance(Duration.ofSeconds(1));
+        snapshot = model.current();
+        assertEquals(Map.of("ValidationError", 2), snapshot.view().dlqByCategory());
+        assertEquals("m1", snapshot.recentDlq().get(1).getOriginalMessage());
+    }
+
+    @Test
+    void testRatesCoverCompleteSecondsOfEachWindow() {
+        for (int second = 0; second < 120; second++) {
+            for (int i = 0; i < 3; i++) {
+                model.record(DashboardModel.Event.PROCESSED);
+            }
+            model.record(DashboardModel.Event.INVALID);
+            clock.advance(Duration.ofSeconds(1));
+        }
+
+        Map<String, Double> rates = model.current().view().rates();
+        assertEquals(3.0, rates.get("processed_1m"));
+        assertEquals(1.2, rates.get("processed_5m"));
+        assertEquals(1.0, rates.get("dlq_1m"));
+        assertEquals(0.0, rates.get("valid_1m"));
+
+        clock.advance(Duration.ofMinutes(10));
+        assertEquals(0.0, model.current().view().rates().get("processed_5m"), "old laps of the ring are ignored");
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.DlqMessage;
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.PayloadCodec;
+import com.example.tpdlq.model.ReplayResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DlqReplayServiceTest {
+
+    private static final String VALID = "{\"orderId\":\"o1\",\"userId\":\"u1\",\"amount\":5}";
+    private static final String NO_USER = "{\"orderId\":\"o2\",\"amount\":5}";
+    private static final String BROKEN = "{\"orderId\":";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MessageProducerService producer = mock(MessageProducerService.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OrderDeduplicator deduplicator = new OrderDeduplicator(true, OrderDeduplicator.Mode.DROP, 100,
+            Duration.ofMinutes(10), registry, new MutableClock());
+    private DlqConsumer dlq;
+
+    @BeforeEach
+    void setUp() {
+        dlq = new DlqConsumer(registry, new DlqLanes(registry, false, "tp8-dlq", "tp8-dlq-retry", "tp8-dlq-garbage",
+                2000, 2000, 2000, 1), new PayloadCodec());
+        when(producer.sendToInputTopic(anyString()))
+                .thenAnswer(inv -> CompletableFuture.completedFuture(mock(SendResult.class)));
+    }
+
+    private DlqReplayService service(int parallelism, int batchSize) {
+        return new DlqReplayService(dlq, new OrderValidator(), producer, deduplicator, registry, parallelism, batchSize);
+    }
+
+    private void addToDlq(String originalMessage) throws Exception {
+        dlq.consumeFromDlq(objectMapper.writeValueAsString(Map.of(
+                "reason", "Processing failed", "originalMessage", originalMessage, "category", "UNKNOWN_ERROR")));
+    }
+
+    private DlqMessage entryFor(String originalMessage) {
+        return dlq.getDlqMessages().stream()
+                .filter(m -> m.getOriginalMessage().equals(originalMessage))
+                .findFirst().orElseThrow();
+    }
+
+    @Test
+    void testDryRunCountsPassingEntriesWithoutChangingAnything() throws Exception {
+        addToDlq(VALID);
+        addToDlq(NO_USER);
+        addToDlq(BROKEN);
+        long changes = dlq.getChangeCount();
+
+        ReplayResult result = service(4, 500).replay(dlq.getDlqMessages(), true);
+
+        assertTrue(result.dryRun());
+        assertEquals(3, result.candidates());
+        assertEquals(1, result.passing());
+        assertEquals(0, result.republished());
+        assertEquals(2, result.stillFailing());
+        assertEquals(Map.of(ErrorCategory.VALIDATION_ERROR, 1, ErrorCategory.MALFORMED_ERROR, 1),
+                result.failingByCategory());
+        assertEquals(changes, dlq.getChangeCount());
+        assertEquals(0, entryFor(NO_USER).getReplayAttempts());
+        verifyNoInteractions(producer);
+    }
+
+    @Test
+    void testOnlyPassingEntriesAreSentAndFailingOnesAreKeptWithTheNewReason() throws Exception {
+        addToDlq(VALID);
+        addToDlq(NO_USER);
+        addToDlq(BROKEN);
+        DlqMessage beforeReplay = entryFor(NO_USER);
+
+        ReplayResult result = service(4, 500).replay(dlq.getDlqMessages(), false);
+
+        assertEquals(1, result.republished());
+        assertEquals(2, result.stillFailing());
+        verify(producer).sendToInputTopic(VALID);
+        verifyNoMoreInteractions(producer);
+        assertEquals(2, dlq.getDlqMessages().size());
+
+        DlqMessage noUser = entryFor(NO_USER);
+        assertEquals("Missing required field: userId", noUser.getReason());
+        assertEquals(ErrorCategory.VALIDATION_ERROR, noUser.getCategory());
+        assertEquals(1, noUser.getReplayAttempts());
+        // Readers holding the old entry never see it change
+        assertEquals(noUser.getId(), beforeReplay.getId());
+        assertEquals("Processing failed", beforeReplay.getReason());
+        assertEquals(0, beforeReplay.getReplayAttempts());
+        assertEquals(ErrorCategory.MALFORMED_ERROR, entryFor(BROKEN).getCategory());
+        assertEquals(1, dlq.getCategorySizes().get(ErrorCategory.VALIDATION_ERROR));
+        assertEquals(0, dlq.getCategorySizes().get(ErrorCategory.UNKNOWN_ERROR));
+
+        service(4, 500).replay(dlq.getDlqMessages(), false);
+        assertEquals(2, entryFor(NO_USER).getReplayAttempts());
+        assertEquals(4.0, registry.get("tpdlq_replay_total").tag("outcome", "still_failing").counter().count());
+    }
+
+    @Test
+    void testReplayClearsTheIdempotencyMarkOfSentOrdersOnly() throws Exception {
+        addToDlq(VALID);
+        addToDlq(NO_USER);
+        deduplicator.markProcessed("o1");
+        deduplicator.markProcessed("o2");
+
+        service(1, 500).replay(dlq.getDlqMessages(), true);
+        assertTrue(deduplicator.isDuplicate("o1"), "a dry run changes nothing");
+
+        service(1, 500).replay(dlq.getDlqMessages(), false);
+        assertFalse(deduplicator.isDuplicate("o1"));
+        assertTrue(deduplicator.isDuplicate("o2"));
+    }
+
+    @Test
+    void testFailedSendKeepsTheEntryUnchanged() throws Exception {
+        addToDlq(VALID);
+        when(producer.sendToInputTopic(VALID))
+                .thenAnswer(inv -> CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        ReplayResult result = service(1, 500).replay(dlq.getDlqMessages(), false);
+
+        assertEquals(1, result.passing());
+        assertEquals(0, result.republished());
+        assertEquals(1, result.failedSends());
+        assertEquals(0, entryFor(VALID).getReplayAttempts());
+    }
+
+    @Test
+    void testEditedPayloadThatStillFailsIsKeptWithTheEntry() throws Exception {
+        addToDlq(BROKEN);
+        DlqMessage entry = entryFor(BROKEN);
+
+        ReplayResult result = service(1, 500).replayEdited(entry, NO_USER);
+
+        assertEquals(1, result.stillFailing());
+        DlqMessage updated = dlq.findById(entry.getId()).orElseThrow();
+        assertEquals(NO_USER, updated.getOriginalMessage());
+        assertEquals("Missing required field: userId", updated.getReason());
+
+        assertEquals(1, service(1, 500).replayEdited(updated, VALID).republished());
+        assertTrue(dlq.getDlqMessages().isEmpty());
+        verify(producer).sendToInputTopic(VALID);
+    }
+
+    @Test
+    void testLargeBacklogIsReplayedInParallelBatches() throws Exception {
+        when(producer.sendToInputTopic(anyString())).thenAnswer(inv -> CompletableFuture.supplyAsync(
+                () -> (SendResult<String, String>) null, CompletableFuture.delayedExecutor(1, TimeUnit.MILLISECONDS)));
+        for (int i = 0; i < 1000; i++) {
+            addToDlq(i % 4 == 0 ? NO_USER : "{\"orderId\":\"o" + i + "\",\"userId\":\"u\",\"amount\":1}");
+        }
+
+        ReplayResult result = service(4, 64).replay(dlq.getDlqMessages(), false);
+
+        assertEquals(1000, result.candidates());
+        assertEquals(750, result.republished());
+        assertEquals(250, result.stillFailing());
+        assertEquals(250, dlq.getDlqMessages().size());
+        assertTrue(dlq.getDlqMessages().stream().allMatch(m -> m.getReplayAttempts() == 1));
+        verify(producer, times(750)).sendToInputTopic(anyString());
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.ExportFilter;
+import com.example.tpdlq.model.ExportResult;
+import com.example.tpdlq.model.Order;
+import com.example.tpdlq.model.PayloadCodec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DlqConsumer dlqConsumer = new DlqConsumer(meterRegistry, new DlqLanes(meterRegistry, false,
+            "tp8-dlq", "tp8-dlq-retry", "tp8-dlq-garbage", 100, 100, 100, 1), new PayloadCodec());
+    private final ValidMessageStore validStore = new ValidMessageStore(meterRegistry, new PayloadCodec());
+
+    @TempDir
+    Path exportDir;
+
+    private ExportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ExportService(dlqConsumer, validStore, meterRegistry, exportDir.toString(), 1024, 2);
+        dlq(0, "VALIDATION_ERROR");
+        dlq(1, "MALFORMED_ERROR");
+        dlq(2, "VALIDATION_ERROR");
+        dlq(3, "VALIDATION_ERROR");
+        validStore.add(new Order("o1", "u1", 12.5), "{\"orderId\":\"o1\"}");
+    }
+
+    private void dlq(long offset, String category) {
+        dlqConsumer.consumeFromDlq(new ConsumerRecord<>("tp8-dlq", 0, offset, null,
+                "{\"reason\":\"r" + offset + "\",\"originalMessage\":\"m" + offset + "\",\"category\":\"" + category + "\"}"));
+    }
+
+    private List<JsonNode> lines(InputStream compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(compressed)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+                    .map(line -> {
+                        assertTrue(line.startsWith("{"), "one object per line: " + line);
+                        try {
+                            return objectMapper.readTree(line);
+                        } catch (IOException e) {
+                            throw new AssertionError(e);
+                        }
+                    })
+                    .toList();
+        }
+    }
+
+    @Test
+    void testJsonlExportFiltersByCategoryAndAppendsValidMessages() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportResult result = service.export(new ExportFilter(Set.of(ErrorCategory.VALIDATION_ERROR), null, null, true),
+                ExportService.Format.JSONL, out);
+
+        List<JsonNode> lines = lines(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(3, result.dlqRecords());
+        assertEquals(1, result.validRecords());
+        assertEquals(out.size(), result.bytes());
+        assertEquals(4, lines.size());
+        assertEquals(List.of("m0", "m2", "m3"),
+                lines.subList(0, 3).stream().map(n -> n.get("originalMessage").asText()).toList());
+        assertEquals("VALIDATION_ERROR", lines.get(0).get("category").asText());
+        assertEquals("valid", lines.get(3).get("store").asText());
+        assertEquals(12.5, lines.get(3).get("amount").asDouble());
+    }
+
+    @Test
+    void testTimeRangeExcludesEntriesOutsideIt() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportResult result = service.export(new ExportFilter(Set.of(), LocalDateTime.now().plusMinutes(1), null, true),
+                ExportService.Format.JSONL, out);
+
+        assertEquals(0, result.dlqRecords() + result.validRecords());
+        assertTrue(lines(new ByteArrayInputStream(out.toByteArray())).isEmpty());
+    }
+
+    @Test
+    void testColumnarExportWritesBoundedRowGroupsToAFile() throws IOException {
+        ExportResult result = service.exportToFile(new ExportFilter(Set.of(), null, null, false),
+                ExportService.Format.COLUMNAR, "backlog.columnar.json.gz");
+
+        Path file = exportDir.resolve("backlog.columnar.json.gz");
+        assertEquals(file.toString(), result.path());
+        assertFalse(Files.exists(exportDir.resolve("backlog.columnar.json.gz.tmp")));
+        List<JsonNode> groups = lines(Files.newInputStream(file));
+        assertEquals(2, groups.size(), "4 entries in row groups of 2");
+        assertEquals(2, groups.get(0).get("rows").asInt());
+        assertEquals("MALFORMED_ERROR", groups.get(0).get("columns").get("category").get(1).asText());
+        assertEquals("r3", groups.get(1).get("columns").get("reason").get(1).asText());
+    }
+
+    @Test
+    void testFileNamesCannotLeaveTheExportDirectory() {
+        ExportFilter all = new ExportFilter(Set.of(), null, null, false);
+        assertThrows(IllegalArgumentException.class,
+                () -> service.exportToFile(all, ExportService.Format.JSONL, "../outside.jsonl.gz"));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.exportToFile(all, ExportService.Format.JSONL, "/tmp/outside.jsonl.gz"));
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.tpdlq.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class FairSchedulerTest {
+
+    private final MessageProducerService producer = mock(MessageProducerService.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock();
+    private final MessageListenerContainer overflowContainer = mock(MessageListenerContainer.class);
+    private FairScheduler scheduler;
+
+    private FairScheduler scheduler(long rate, long burst, int perKeyQueue, Map<String, Integer> weights) {
+        return scheduler(rate, burst, perKeyQueue, 1000, weights);
+    }
+
+    private FairScheduler scheduler(long rate, long burst, int perKeyQueue, int maxQueued, Map<String, Integer> weights) {
+        scheduler = new FairScheduler(producer, registry, true, rate, burst, perKeyQueue, maxQueued, 2, 1, weights,
+                () -> overflowContainer, clock);
+        return scheduler;
+    }
+
+    private static String order(String userId, int i) {
+        return "{\"orderId\":\"" + userId + "-" + i + "\",\"userId\":\"" + userId + "\",\"amount\":1}";
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void testTokenBucketRefillsAtConfiguredRate() {
+        FairScheduler fair = scheduler(10, 2, 100, Map.of());
+        assertTrue(fair.tryAcquire("u1"));
+        assertTrue(fair.tryAcquire("u1"));
+        assertFalse(fair.tryAcquire("u1"));
+        assertTrue(fair.tryAcquire("u2"), "buckets are per key");
+
+        clock.advance(Duration.ofMillis(100));
+        assertTrue(fair.tryAcquire("u1"));
+        assertFalse(fair.tryAcquire("u1"));
+    }
+
+    @Test
+    void testRateLimitedUserGoesToOverflowTopic() {
+        FairScheduler fair = scheduler(10, 1, 100, Map.of());
+        assertTrue(fair.submit(order("noisy", 1)));
+        assertFalse(fair.submit(order("noisy", 2)));
+        verify(producer).sendToOverflowTopic("noisy", order("noisy", 2));
+        assertEquals(1.0, registry.get("tpdlq_fairness_overflow_total").tag("reason", "rate").counter().count());
+    }
+
+    @Test
+    void testFullSubQueueGoesToOverflowTopic() {
+        FairScheduler fair = scheduler(1000, 1000, 2, Map.of());
+        fair.submit(order("noisy", 1));
+        fair.submit(order("noisy", 2));
+        assertFalse(fair.submit(order("noisy", 3)));
+        assertTrue(fair.submit(order("quiet", 1)));
+        verify(producer).sendToOverflowTopic("noisy", order("noisy", 3));
+    }
+
+    @Test
+    void testRoundRobinInterleavesUsersByWeight() throws Exception {
+        FairScheduler fair = scheduler(1000, 1000, 100, Map.of("vip", 2));
+        for (int i = 0; i < 6; i++) {
+            fair.submit(order("noisy", i));
+        }
+        for (int i = 0; i < 6; i++) {
+            fair.submit(order("vip", i));
+        }
+        fair.submit("not json");
+
+        List<String> dispatched = new CopyOnWriteArrayList<>();
+        fair.start(dispatched::add);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatched.size() < 13 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        // quantum 2: noisy gets 2 per turn, vip (weight 2) gets 4, the malformed message its own turn
+        assertEquals(List.of(order("noisy", 0), order("noisy", 1),
+                order("vip", 0), order("vip", 1), order("vip", 2), order("vip", 3),
+                "not json",
+                order("noisy", 2), order("noisy", 3),
+                order("vip", 4), order("vip", 5),
+                order("noisy", 4), order("noisy", 5)), dispatched);
+        assertEquals(0, fair.getQueued());
+    }
+
+    @Test
+    void testOverflowIsDrainedAtTheUsersRateWithoutBlockingTheListener() throws Exception {
+        FairScheduler fair = scheduler(10, 1, 100, Map.of());
+        List<String> dispatched = new CopyOnWriteArrayList<>();
+        fair.start(dispatched::add);
+        assertTrue(fair.submit(order("noisy", 1)));
+        assertFalse(fair.submit(order("noisy", 2)));
+
+        // Out of tokens: parked again at the end of the overflow topic, the listener is not held
+        assertFalse(fair.resubmit(order("noisy", 2)));
+        assertTrue(fair.resubmit(order("quiet", 1)), "other users are not stuck behind the noisy one");
+        verify(producer, times(2)).sendToOverflowTopic("noisy", order("noisy", 2));
+        verify(overflowContainer).pause();
+        fair.resumeOverflowIfDue();
+        verify(overflowContainer, never()).resume();
+
+        clock.advance(Duration.ofMillis(100));
+        fair.resumeOverflowIfDue();
+        verify(overflowContainer).resume();
+        assertTrue(fair.resubmit(order("noisy", 2)));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatched.size() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        // Dispatch order between the two users depends on when the dispatcher wakes up
+        assertEquals(3, dispatched.size());
+        assertEquals(Set.of(order("noisy", 1), order("quiet", 1), order("noisy", 2)), Set.copyOf(dispatched));
+        assertEquals(2.0, registry.get("tpdlq_fairness_overflow_drained_total").counter().count());
+        assertEquals(1.0, registry.get("tpdlq_fairness_overflow_total").tag("reason", "retry").counter().count());
+    }
+
+    @Test
+    void testOverflowResumesOnceDispatchersMakeRoom() throws Exception {
+        FairScheduler fair = scheduler(1000, 1000, 100, 2, Map.of());
+        CountDownLatch dispatching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        fair.start(m -> {
+            dispatching.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        fair.submit(order("u1", 1));
+        assertTrue(dispatching.await(5, TimeUnit.SECONDS));
+        fair.submit(order("u2", 1));
+        fair.submit(order("u3", 1));
+
+        assertFalse(fair.resubmit(order("u4", 1)), "more than half full");
+        verify(overflowContainer).pause();
+        fair.resumeOverflowIfDue();
+        verify(overflowContainer, never()).resume();
+
+        release.countDown();
+        verify(overflowContainer, timeout(5000)).resume();
+        assertTrue(fair.resubmit(order("u4", 1)));
+    }
+
+    @Test
+    void testDrainAfterShutdownIsParkedAgain() {
+        FairScheduler fair = scheduler(10, 1, 100, Map.of());
+        fair.start(m -> { });
+        fair.shutdown();
+
+        assertFalse(fair.resubmit(order("noisy", 2)));
+        verify(producer).sendToOverflowTopic("noisy", order("noisy", 2));
+        verify(overflowContainer, never()).pause();
+    }
+
+    @Test
+    void testIdleBucketsAreEvicted() {
+        FairScheduler fair = scheduler(10, 2, 100, Map.of());
+        fair.tryAcquire("u1");
+        clock.advance(Duration.ofSeconds(1));
+        fair.evictIdleBuckets();
+        assertEquals(0, fair.bucketCount());
+    }
+
+    @Test
+    void testUserIdIsReadWithoutFullParse() {
+        FairScheduler fair = scheduler(10, 2, 100, Map.of());
+        assertEquals("u1", fair.userIdOf("{\"extra\":{\"userId\":\"x\"},\"userId\":\" u1 \"}"));
+        assertEquals(FairScheduler.ANONYMOUS_KEY, fair.userIdOf("{\"userId\":42}"));
+        assertEquals(FairScheduler.ANONYMOUS_KEY, fair.userIdOf("{broken"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.IngestResult;
+import com.example.tpdlq.model.IngestSettings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class FileProducerServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private FileProducerService service(MessageProducerService producer) {
+        FileProducerService service = new FileProducerService();
+        ReflectionTestUtils.setField(service, "messageProducerService", producer);
+        return service;
+    }
+
+    private Path file(int validLines) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= validLines; i++) {
+            lines.add("{\"orderId\":\"o" + i + "\",\"userId\":\"u1\",\"amount\":1.0}");
+            if (i % 10 == 0) {
+                lines.add("{\"orderId\":");
+                lines.add("");
+            }
+        }
+        return Files.write(dir.resolve("orders.jsonl"), lines);
+    }
+
+    @Test
+    void testParallelIngestSendsEveryValidLineAndSkipsTheRest() throws IOException {
+        MessageProducerService producer = mock(MessageProducerService.class);
+        when(producer.sendToInputTopic(anyString()))
+                .thenAnswer(inv -> CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        IngestResult result = service(producer).processJsonlFile(file(1000).toString(),
+                new IngestSettings(512, 4, 7));
+
+        assertEquals(1200, result.totalLines());
+        assertEquals(1000, result.successfulLines());
+        assertEquals(200, result.skippedLines());
+        assertEquals(0, result.failedSends());
+        verify(producer, times(1000)).sendToInputTopic(anyString());
+    }
+
+    @Test
+    void testFailedSendsAreCountedWithoutStoppingIngest() throws IOException {
+        MessageProducerService producer = mock(MessageProducerService.class);
+        when(producer.sendToInputTopic(anyString()))
+                .thenAnswer(inv -> ((String) inv.getArgument(0)).contains("\"o5\"")
+                        ? CompletableFuture.failedFuture(new IllegalStateException("broker down"))
+                        : CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        IngestResult result = service(producer).processJsonlFile(file(20).toString(),
+                new IngestSettings(8192, 1, 3));
+
+        assertEquals(19, result.successfulLines());
+        assertEquals(1, result.failedSends());
+        assertEquals(4, result.skippedLines());
+    }
+}
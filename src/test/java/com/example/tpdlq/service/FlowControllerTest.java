@@ -0,0 +1,112 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.MainConsumer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FlowControllerTest {
+
+    private final KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+    private final MessageListenerContainer container = mock(MessageListenerContainer.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
+    private final ProcessingPipeline pipeline = mock(ProcessingPipeline.class);
+    private final FairScheduler fairScheduler = mock(FairScheduler.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SendTracker sendTracker = new SendTracker(meterRegistry);
+    private boolean paused;
+
+    @BeforeEach
+    void setUp() {
+        when(registry.getListenerContainer(MainConsumer.LISTENER_ID)).thenReturn(container);
+        when(kafkaTemplate.metrics()).thenReturn(Map.of());
+        when(container.isPauseRequested()).thenAnswer(inv -> paused);
+        doAnswer(inv -> paused = true).when(container).pause();
+        doAnswer(inv -> paused = false).when(container).resume();
+    }
+
+    private FlowController controller(int maxInFlight, double targetLatencyMs) {
+        return new FlowController(registry, kafkaTemplate, sendTracker, pipeline, fairScheduler, meterRegistry,
+                true, maxInFlight, 0.8, 0.5, targetLatencyMs, 10, 100);
+    }
+
+    @Test
+    void testPausesOnSaturatedStageQueueAndResumesBelowLowWatermark() {
+        FlowController flow = controller(1000, 1000);
+        when(pipeline.getMaxQueueFillRatio()).thenReturn(0.9);
+        flow.evaluate();
+        assertTrue(flow.isSaturated());
+        assertTrue(paused);
+
+        // Between the watermarks the container stays paused
+        when(pipeline.getMaxQueueFillRatio()).thenReturn(0.6);
+        flow.evaluate();
+        assertTrue(paused);
+
+        when(pipeline.getMaxQueueFillRatio()).thenReturn(0.2);
+        flow.evaluate();
+        assertFalse(flow.isSaturated());
+        assertFalse(paused);
+    }
+
+    @Test
+    void testInFlightSendsCountAsPressure() {
+        FlowController flow = controller(10, 1000);
+        for (int i = 0; i < 9; i++) {
+            sendTracker.track(new CompletableFuture<>());
+        }
+        flow.evaluate();
+        assertTrue(paused);
+    }
+
+    @Test
+    void testBudgetPausesListenerUntilNextInterval() {
+        FlowController flow = controller(1000, 1000);
+        for (int i = 0; i < 99; i++) {
+            flow.onRecordConsumed();
+        }
+        assertFalse(paused);
+        flow.onRecordConsumed();
+        assertTrue(paused, "Listener pauses once the budget is spent");
+        flow.evaluate();
+        assertFalse(paused, "Next interval resumes when downstream is healthy");
+    }
+
+    @Test
+    void testBudgetShrinksWhenLatencyAboveTarget() {
+        FlowController flow = controller(1000, 0);
+        sendTracker.track(new CompletableFuture<String>()).complete("ok");
+        flow.evaluate();
+        assertEquals(50, flow.getBatchBudget());
+        sendTracker.track(new CompletableFuture<String>()).complete("ok");
+        flow.evaluate();
+        assertEquals(25, flow.getBatchBudget());
+    }
+
+    @Test
+    void testBudgetRecoversWhenNoSendsCompleteAfterASlowBurst() {
+        FlowController flow = controller(1000, 0);
+        sendTracker.track(new CompletableFuture<String>()).complete("ok");
+        flow.evaluate();
+        assertEquals(50, flow.getBatchBudget());
+
+        // Valid traffic only: no sends, so the high average from the burst is stale
+        for (int interval = 0; interval < 20; interval++) {
+            for (int i = 0; i < flow.getBatchBudget(); i++) {
+                flow.onRecordConsumed();
+            }
+            flow.evaluate();
+        }
+        assertEquals(100, flow.getBatchBudget());
+    }
+}
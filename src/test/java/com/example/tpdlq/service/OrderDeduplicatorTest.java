@@ -0,0 +1,95 @@
+package com.example.tpdlq.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderDeduplicatorTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    private OrderDeduplicator deduplicator(int maxEntries) {
+        return new OrderDeduplicator(true, OrderDeduplicator.Mode.DROP, maxEntries, Duration.ofMinutes(10),
+                new SimpleMeterRegistry(), clock);
+    }
+
+    @Test
+    void testMarkedOrderIsDuplicate() {
+        OrderDeduplicator dedup = deduplicator(100);
+        assertFalse(dedup.isDuplicate("o1"));
+        dedup.markProcessed("o1");
+        assertTrue(dedup.isDuplicate("o1"));
+        assertTrue(dedup.isDuplicate(" o1 "), "Ids are compared trimmed");
+        assertFalse(dedup.isDuplicate("o2"));
+    }
+
+    @Test
+    void testEntriesExpireAfterWindow() {
+        OrderDeduplicator dedup = deduplicator(100);
+        dedup.markProcessed("o1");
+        clock.advance(Duration.ofMinutes(9));
+        assertTrue(dedup.isDuplicate("o1"));
+        clock.advance(Duration.ofMinutes(2));
+        assertFalse(dedup.isDuplicate("o1"));
+        clock.advance(Duration.ofMinutes(25));
+        assertFalse(dedup.isDuplicate("o1"));
+    }
+
+    @Test
+    void testSizeIsBounded() {
+        OrderDeduplicator dedup = deduplicator(50);
+        for (int i = 0; i < 1000; i++) {
+            dedup.markProcessed("o" + i);
+        }
+        assertEquals(50, dedup.size());
+        assertTrue(dedup.isDuplicate("o999"));
+        assertFalse(dedup.isDuplicate("o0"), "Evicted ids are not reported as duplicates");
+    }
+
+    @Test
+    void testFiltersDoNotSaturateWhenMoreThanMaxEntriesArriveInOneWindow() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        OrderDeduplicator dedup = new OrderDeduplicator(true, OrderDeduplicator.Mode.DROP, 100,
+                Duration.ofMinutes(10), registry, clock);
+        for (int i = 0; i < 5000; i++) {
+            dedup.markProcessed("o" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(dedup.isDuplicate("new" + i));
+        }
+        // Two filters at ~1% each once full; a filter holding 50x its size would answer "maybe" for almost all
+        assertTrue(registry.get("tpdlq_idempotency_bloom_false_positives_total").counter().count() < 100);
+        assertTrue(dedup.isDuplicate("o4999"));
+    }
+
+    @Test
+    void testForgottenOrderIsNoLongerDuplicate() {
+        OrderDeduplicator dedup = deduplicator(100);
+        dedup.markProcessed("o1");
+        dedup.forget(" o1 ");
+        assertFalse(dedup.isDuplicate("o1"));
+        assertEquals(0, dedup.size());
+        dedup.markProcessed("o1");
+        assertTrue(dedup.isDuplicate("o1"));
+    }
+
+    @Test
+    void testHitRatio() {
+        OrderDeduplicator dedup = deduplicator(100);
+        dedup.markProcessed("o1");
+        dedup.isDuplicate("o1");
+        dedup.isDuplicate("o2");
+        assertEquals(0.5, dedup.getHitRatio(), 1e-9);
+    }
+
+    @Test
+    void testDisabledNeverReportsDuplicates() {
+        OrderDeduplicator dedup = new OrderDeduplicator(false, OrderDeduplicator.Mode.DROP, 100,
+                Duration.ofMinutes(10), new SimpleMeterRegistry(), clock);
+        dedup.markProcessed("o1");
+        assertFalse(dedup.isDuplicate("o1"));
+    }
+}
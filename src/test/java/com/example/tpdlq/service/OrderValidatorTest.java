@@ -1,5 +1,6 @@
 package com.example.tpdlq.service;
 
+import com.example.tpdlq.model.ErrorCategory;
 import com.example.tpdlq.model.Order;
 import org.junit.jupiter.api.Test;
 
@@ -71,4 +72,20 @@ class OrderValidatorTest {
         assertNotNull(error, "Negative amount should return error");
         assertTrue(error.contains("greater than 0"), "Error message should mention amount must be greater than 0");
     }
+
+    @Test
+    void testCheckClassifiesRawMessagesLikeTheInputConsumer() {
+        assertTrue(validator.check("{\"orderId\":\"o1\",\"userId\":\"u1\",\"amount\":5}").isValid());
+
+        OrderValidator.Verdict invalid = validator.check("{\"orderId\":\"o1\",\"userId\":\"u1\",\"amount\":-5}");
+        assertEquals(ErrorCategory.VALIDATION_ERROR, invalid.category());
+        assertEquals("o1", invalid.order().getOrderId());
+
+        assertEquals(ErrorCategory.MALFORMED_ERROR,
+                validator.check("{\"orderId\":\"o1\",\"userId\":\"u1\",\"amount\":5,\"x\":1}").category());
+        OrderValidator.Verdict malformed = validator.check("{\"orderId\":");
+        assertNull(malformed.order());
+        assertTrue(malformed.reason().startsWith("Malformed JSON"));
+        assertNull(validator.check("null").order());
+    }
 }
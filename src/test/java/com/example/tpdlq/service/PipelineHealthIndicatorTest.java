@@ -0,0 +1,108 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.PayloadCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PipelineHealthIndicatorTest {
+
+    private final KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+    private final MessageListenerContainer container = mock(MessageListenerContainer.class);
+    private final ProcessingPipeline pipeline = mock(ProcessingPipeline.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SendTracker sendTracker = new SendTracker(meterRegistry);
+    private final DlqLanes lanes = new DlqLanes(meterRegistry, false, "tp8-dlq", "tp8-dlq-retry", "tp8-dlq-garbage",
+            10, 10, 10, 1);
+    private final DlqConsumer dlqConsumer = new DlqConsumer(meterRegistry, lanes, new PayloadCodec());
+    private final Map<MetricName, Metric> consumerMetrics = new HashMap<>();
+    private final MutableClock clock = new MutableClock();
+
+    private PipelineHealthIndicator indicator() {
+        when(registry.getListenerContainers()).thenReturn(List.of(container));
+        when(container.isRunning()).thenReturn(true);
+        doReturn(Map.of("consumer-1", consumerMetrics)).when(container).metrics();
+        return new PipelineHealthIndicator(registry, sendTracker, pipeline, dlqConsumer, lanes, meterRegistry,
+                100, 2, 0.9, 1.0, 3, clock);
+    }
+
+    private void lag(String topic, int partition, double value) {
+        MetricName name = new MetricName("records-lag", "consumer-fetch-manager-metrics", "",
+                Map.of("client-id", "consumer-1", "topic", topic, "partition", String.valueOf(partition)));
+        Metric metric = mock(Metric.class);
+        when(metric.metricValue()).thenReturn(value);
+        consumerMetrics.put(name, metric);
+    }
+
+    @Test
+    void testIdlePipelineIsUp() {
+        lag("tp8-input", 0, 5);
+        lag("tp8-input", 1, Double.NaN);
+
+        PipelineHealthIndicator indicator = indicator();
+
+        assertEquals(Status.UP, indicator.health().getStatus());
+        assertEquals(Map.of("tp8-input-0", 5L), indicator.getStatus().consumerLag());
+        assertEquals(1.0, meterRegistry.get("tpdlq_ready").gauge().value());
+    }
+
+    @Test
+    void testThresholdsFlipReadinessOnlyOnRefresh() {
+        PipelineHealthIndicator indicator = indicator();
+        lag("tp8-input", 2, 250);
+        sendTracker.track(new CompletableFuture<>());
+        sendTracker.track(new CompletableFuture<>());
+        sendTracker.track(new CompletableFuture<>());
+        assertTrue(indicator.getStatus().isReady(), "health reads the cached status");
+
+        indicator.refresh();
+
+        assertEquals(Status.OUT_OF_SERVICE, indicator.health().getStatus());
+        assertEquals(250, indicator.getStatus().maxConsumerLag());
+        assertEquals(2, indicator.getStatus().breaches().size());
+        assertEquals(0.0, meterRegistry.get("tpdlq_ready").gauge().value());
+    }
+
+    private void addRetryEntries(int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            dlqConsumer.consumeFromDlq(new ConsumerRecord<>("tp8-dlq", 0, i, null,
+                    "{\"reason\":\"Missing userId\",\"originalMessage\":\"{}\",\"category\":\"VALIDATION_ERROR\"}"));
+        }
+    }
+
+    @Test
+    void testRetryRateFailsReadinessButAStableBacklogDoesNot() {
+        PipelineHealthIndicator indicator = indicator();
+        addRetryEntries(0, 8);
+        clock.advance(Duration.ofSeconds(2));
+
+        indicator.refresh();
+
+        assertEquals(8, indicator.getStatus().retryBacklog());
+        assertEquals(0.8, indicator.getStatus().storeFill(), 1e-9);
+        assertEquals(4.0, indicator.getStatus().retryRate(), 1e-9);
+        assertEquals(List.of("retry entries 4.0/s > 3.0/s"), indicator.getStatus().breaches());
+
+        // The backlog stays, but nothing new arrives: ready again
+        clock.advance(Duration.ofSeconds(1));
+        indicator.refresh();
+        assertEquals(8, indicator.getStatus().retryBacklog());
+        assertTrue(indicator.getStatus().isReady());
+        assertEquals(Status.UP, indicator.health().getStatus());
+    }
+}
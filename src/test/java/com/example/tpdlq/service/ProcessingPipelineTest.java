@@ -0,0 +1,153 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.Order;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ProcessingPipelineTest {
+
+    private final MessageProducerService producer = mock(MessageProducerService.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ProcessingPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void testStagesRunInOrder() throws Exception {
+        List<String> calls = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        pipeline = new ProcessingPipeline(List.of(
+                handler("first", ErrorCategory.ENRICHMENT_ERROR, (o, m) -> calls.add("first")),
+                handler("second", ErrorCategory.PERSISTENCE_ERROR, (o, m) -> {
+                    calls.add("second");
+                    done.countDown();
+                })), producer, registry, 10, 1);
+
+        assertTrue(pipeline.submit(new Order("o1", "u1", 10.0), "{}"));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("first", "second"), calls);
+        assertEquals(List.of("first", "second"), pipeline.getStageNames());
+        verifyNoInteractions(producer);
+    }
+
+    @Test
+    void testFailingStageRoutesToDlqWithStageCategory() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        doAnswer(inv -> {
+            failed.countDown();
+            return null;
+        }).when(producer).sendToDlqTopic(any(), any(), any());
+        List<String> later = new CopyOnWriteArrayList<>();
+        pipeline = new ProcessingPipeline(List.of(
+                handler("persistence", ErrorCategory.PERSISTENCE_ERROR, (o, m) -> {
+                    throw new IllegalStateException("store down");
+                }),
+                handler("forwarding", ErrorCategory.FORWARDING_ERROR, (o, m) -> later.add(m))),
+                producer, registry, 10, 1);
+
+        pipeline.submit(new Order("o1", "u1", 10.0), "{\"orderId\":\"o1\"}");
+
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        verify(producer).sendToDlqTopic(eq("{\"orderId\":\"o1\"}"), contains("persistence"), eq(ErrorCategory.PERSISTENCE_ERROR));
+        assertTrue(later.isEmpty(), "Later stages must not run after a failure");
+        assertEquals(1.0, registry.get("tpdlq_pipeline_stage_failed_total").tag("stage", "persistence").counter().count());
+    }
+
+    @Test
+    void testFailureCallbackRunsOnlyWhenAStageFails() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        List<String> completed = new CopyOnWriteArrayList<>();
+        pipeline = new ProcessingPipeline(List.of(
+                handler("persistence", ErrorCategory.PERSISTENCE_ERROR, (o, m) -> {
+                    if (o.getOrderId().equals("bad")) {
+                        throw new IllegalStateException("store down");
+                    }
+                }),
+                handler("forwarding", ErrorCategory.FORWARDING_ERROR, (o, m) -> completed.add(o.getOrderId()))),
+                producer, registry, 10, 1);
+
+        pipeline.submit(new Order("ok", "u1", 10.0), "{}", () -> fail("ok must not fail"));
+        pipeline.submit(new Order("bad", "u1", 10.0), "{}", failed::countDown);
+
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        pipeline.shutdown();
+        assertEquals(List.of("ok"), completed);
+    }
+
+    @Test
+    void testSubmitterBlockedOnAFullStageIsRejectedAtShutdown() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        pipeline = new ProcessingPipeline(List.of(
+                handler("persistence", ErrorCategory.PERSISTENCE_ERROR, (o, m) -> {
+                    started.countDown();
+                    release.await();
+                    handled.add(o.getOrderId());
+                })), producer, registry, 1, 1);
+        assertTrue(pipeline.submit(new Order("running", "u1", 1.0), "{}"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.submit(new Order("queued", "u1", 1.0), "{}"));
+
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(
+                () -> pipeline.submit(new Order("blocked", "u1", 1.0), "{}"));
+        Thread shutdown = new Thread(pipeline::shutdown);
+        shutdown.start();
+
+        assertFalse(blocked.get(5, TimeUnit.SECONDS), "the blocked submitter must see the shutdown");
+        release.countDown();
+        shutdown.join(5000);
+        assertEquals(List.of("running", "queued"), handled);
+    }
+
+    @Test
+    void testEnrichmentNormalizesOrder() {
+        Order order = new Order(" o1 ", " u1 ", 10.126);
+        new EnrichmentHandler().handle(order, "{}");
+        assertEquals("o1", order.getOrderId());
+        assertEquals("u1", order.getUserId());
+        assertEquals(10.13, order.getAmount());
+    }
+
+    private static OrderHandler handler(String name, ErrorCategory category, Body body) {
+        return new OrderHandler() {
+            @Override
+            public String getStageName() {
+                return name;
+            }
+
+            @Override
+            public ErrorCategory getFailureCategory() {
+                return category;
+            }
+
+            @Override
+            public void handle(Order order, String message) throws Exception {
+                body.apply(order, message);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void apply(Order order, String message) throws Exception;
+    }
+}
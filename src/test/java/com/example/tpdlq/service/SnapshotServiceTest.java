@@ -0,0 +1,146 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.consumer.DlqConsumer;
+import com.example.tpdlq.model.DlqMessage;
+import com.example.tpdlq.model.ErrorCategory;
+import com.example.tpdlq.model.Order;
+import com.example.tpdlq.model.PayloadCodec;
+import com.example.tpdlq.model.ValidMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SnapshotServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final PayloadCodec codec = new PayloadCodec();
+
+    private static DlqLanes lanes() {
+        return new DlqLanes(new SimpleMeterRegistry(), false, "tp8-dlq", "tp8-dlq-retry", "tp8-dlq-garbage",
+                100, 100, 100, 1);
+    }
+
+    @Test
+    void testRestoreReloadsStoresAndSeeksToSnapshotOffsets() {
+        Path file = dir.resolve("tpdlq.snapshot");
+        DlqConsumer dlq = new DlqConsumer(new SimpleMeterRegistry(), lanes(), codec);
+        ValidMessageStore valid = new ValidMessageStore(new SimpleMeterRegistry(), codec);
+        dlq.consumeFromDlq(new ConsumerRecord<>("tp8-dlq", 0, 41, null,
+                "{\"reason\":\"Missing userId\",\"originalMessage\":\"{}\",\"category\":\"VALIDATION_ERROR\"}"));
+        valid.add(new Order("o1", "u1", 10.0), "{\"orderId\":\"o1\"}");
+
+        SnapshotService service = new SnapshotService(dlq, valid, codec, new SimpleMeterRegistry(), file);
+        assertTrue(service.snapshot());
+        assertFalse(service.snapshot(), "unchanged stores are not written again");
+
+        // A restart starts with a fresh codec
+        PayloadCodec restoredCodec = new PayloadCodec();
+        DlqConsumer restoredDlq = new DlqConsumer(new SimpleMeterRegistry(), lanes(), restoredCodec);
+        ValidMessageStore restoredValid = new ValidMessageStore(new SimpleMeterRegistry(), restoredCodec);
+        new SnapshotService(restoredDlq, restoredValid, restoredCodec, new SimpleMeterRegistry(), file).restore();
+
+        DlqMessage original = dlq.getDlqMessages().get(0);
+        DlqMessage restored = restoredDlq.getDlqMessages().get(0);
+        assertEquals(original.getId(), restored.getId());
+        assertEquals(original.getTimestamp(), restored.getTimestamp());
+        assertEquals(ErrorCategory.VALIDATION_ERROR, restored.getCategory());
+        assertEquals("o1", restoredValid.getAll().get(0).getOrderId());
+
+        ConsumerSeekCallback callback = mock(ConsumerSeekCallback.class);
+        restoredDlq.onPartitionsAssigned(Map.of(new TopicPartition("tp8-dlq", 0), 0L), callback);
+        verify(callback).seek("tp8-dlq", 0, 42L);
+    }
+
+    @Test
+    void testCorruptSnapshotIsRejected() throws IOException {
+        Path file = dir.resolve("tpdlq.snapshot");
+        SnapshotCodec.write(new SnapshotCodec.Snapshot(Instant.now(),
+                Map.of(new TopicPartition("tp8-dlq", 0), 7L),
+                List.of(new DlqMessage("bad", codec.compress("{}"), ErrorCategory.MALFORMED_ERROR)), List.of()), file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[20] ^= 0x1;
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> SnapshotCodec.read(file, codec));
+        assertTrue(e.getMessage().contains("checksum"));
+    }
+
+    @Test
+    void testNullFieldsRoundTrip() throws IOException {
+        DlqMessage message = new DlqMessage(null, null, ErrorCategory.UNKNOWN_ERROR);
+        message.setTimestamp(null);
+        message.setReplayAttempts(3);
+        ByteBuffer encoded = SnapshotCodec.encode(new SnapshotCodec.Snapshot(Instant.now(),
+                Map.of(), List.of(message), List.of()));
+        DlqMessage decoded = SnapshotCodec.decode(encoded, codec).dlqMessages().get(0);
+        assertNull(decoded.getReason());
+        assertNull(decoded.getTimestamp());
+        assertEquals(3, decoded.getReplayAttempts());
+    }
+
+    @Test
+    void testVersionOneSnapshotIsStillRead() throws IOException {
+        // Version 1 layout: DLQ entries end with their timestamp, without a replay attempt count
+        ByteBuffer v1 = ByteBuffer.allocate(256);
+        v1.putInt(0x54504451).putShort((short) 1).putLong(1_000L);
+        v1.putInt(1);
+        putString(v1, "tp8-dlq");
+        v1.putInt(0).putLong(42L);
+        v1.putInt(1);
+        putString(v1, "dlq-1");
+        putString(v1, "Missing userId");
+        putString(v1, "{}");
+        putString(v1, "VALIDATION_ERROR");
+        v1.putLong(1_767_225_600L).putInt(5);
+        v1.putInt(1);
+        putString(v1, "o1");
+        putString(v1, "u1");
+        v1.putDouble(9.5);
+        putString(v1, "{\"orderId\":\"o1\"}");
+        v1.putLong(Long.MIN_VALUE).putInt(0);
+        CRC32 crc = new CRC32();
+        crc.update(v1.array(), 0, v1.position());
+        v1.putInt((int) crc.getValue());
+        v1.flip();
+
+        SnapshotCodec.Snapshot snapshot = SnapshotCodec.decode(v1, codec);
+
+        assertEquals(Instant.ofEpochMilli(1_000L), snapshot.createdAt());
+        assertEquals(Map.of(new TopicPartition("tp8-dlq", 0), 42L), snapshot.offsets());
+        DlqMessage dlq = snapshot.dlqMessages().get(0);
+        assertEquals("dlq-1", dlq.getId());
+        assertEquals("Missing userId", dlq.getReason());
+        assertEquals("{}", dlq.getOriginalMessage());
+        assertEquals(ErrorCategory.VALIDATION_ERROR, dlq.getCategory());
+        assertEquals(LocalDateTime.of(2026, 1, 1, 0, 0, 0, 5), dlq.getTimestamp());
+        assertEquals(0, dlq.getReplayAttempts());
+        ValidMessage valid = snapshot.validMessages().get(0);
+        assertEquals("o1", valid.getOrderId());
+        assertEquals(9.5, valid.getAmount(), 1e-9);
+        assertNull(valid.getTimestamp());
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.tpdlq.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TransactionBatcherTest {
+
+    private static final TopicPartition INPUT = new TopicPartition("tp8-input", 0);
+
+    private final MockProducer<String, String> producer =
+            new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+    private final Consumer<?, ?> consumer = mock(Consumer.class);
+
+    @BeforeEach
+    void setUp() {
+        producer.initTransactions();
+        doReturn(new ConsumerGroupMetadata("tp8-consumer-group")).when(consumer).groupMetadata();
+    }
+
+    private TransactionBatcher batcher(int batchSize) {
+        return new TransactionBatcher(() -> producer, batchSize, Duration.ofHours(1), new SimpleMeterRegistry());
+    }
+
+    private void handle(TransactionBatcher batcher, long offset, boolean toDlq) {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>(INPUT.topic(), INPUT.partition(), offset, null, "m");
+        if (!batcher.begin(record, consumer)) {
+            return;
+        }
+        assertTrue(batcher.isActive());
+        if (toDlq) {
+            batcher.send(new ProducerRecord<>("tp8-dlq", "dlq-" + offset));
+        }
+        batcher.complete(record, consumer);
+    }
+
+    @Test
+    void testRecordsAndOffsetsCommitTogetherPerBatch() {
+        TransactionBatcher batcher = batcher(3);
+        handle(batcher, 10, true);
+        handle(batcher, 11, false);
+        assertTrue(producer.transactionInFlight());
+        assertTrue(producer.history().isEmpty(), "nothing is visible before the commit");
+
+        handle(batcher, 12, true);
+
+        assertTrue(producer.transactionCommitted());
+        assertFalse(batcher.isActive());
+        assertEquals(2, producer.history().size());
+        assertEquals(Map.of("tp8-consumer-group", Map.of(INPUT, new OffsetAndMetadata(13))),
+                producer.consumerGroupOffsetsHistory().get(0));
+    }
+
+    @Test
+    void testFlushCommitsAPartialBatch() {
+        TransactionBatcher batcher = batcher(100);
+        handle(batcher, 0, true);
+
+        batcher.flush(consumer);
+
+        assertTrue(producer.transactionCommitted());
+        assertEquals(1, producer.history().size());
+    }
+
+    @Test
+    void testFailedCommitAbortsAndRewindsToTheBatchStart() {
+        TransactionBatcher batcher = batcher(2);
+        producer.commitTransactionException = new KafkaException("broker unavailable");
+        handle(batcher, 40, true);
+        handle(batcher, 41, true);
+
+        assertTrue(producer.transactionAborted());
+        assertTrue(producer.history().isEmpty());
+        verify(consumer).seek(INPUT, 40L);
+        assertFalse(batcher.isActive());
+    }
+
+    @Test
+    void testRecordsAfterAnAbortedBatchInTheSamePollAreCommittedOnce() {
+        TransactionBatcher batcher = batcher(2);
+        producer.commitTransactionException = new KafkaException("broker unavailable");
+        handle(batcher, 40, true);
+        handle(batcher, 41, true);
+        producer.commitTransactionException = null;
+        // Same poll: the seek moved the position back to 40, but 42 and 43 are still delivered
+        doReturn(40L).when(consumer).position(INPUT);
+        handle(batcher, 42, true);
+        handle(batcher, 43, true);
+        assertFalse(batcher.isActive());
+
+        // Next poll: fetched from the seek position again
+        doReturn(44L).when(consumer).position(INPUT);
+        for (long offset = 40; offset < 44; offset++) {
+            handle(batcher, offset, true);
+        }
+
+        assertEquals(4, producer.history().size(), "every DLQ record is committed exactly once");
+        assertEquals(List.of(
+                        Map.of("tp8-consumer-group", Map.of(INPUT, new OffsetAndMetadata(42))),
+                        Map.of("tp8-consumer-group", Map.of(INPUT, new OffsetAndMetadata(44)))),
+                producer.consumerGroupOffsetsHistory());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.tpdlq.service;
+
+import com.example.tpdlq.model.UserAggregate;
+import com.example.tpdlq.model.WindowSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowedAggregatorTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private WindowedAggregator aggregator(int maxKeys) {
+        return new WindowedAggregator(Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofSeconds(30),
+                Duration.ofSeconds(5), maxKeys, 10, 3, registry, clock);
+    }
+
+    @Test
+    void testSlidingTotalsPerUser() {
+        WindowedAggregator agg = aggregator(100);
+        agg.add("u1", 10.0);
+        agg.add("u1", 5.0);
+        agg.add("u2", 30.0);
+
+        List<UserAggregate> totals = agg.slidingTotals(10);
+        assertEquals("u2", totals.get(0).userId());
+        assertEquals(15.0, agg.slidingTotal("u1").total(), 1e-9);
+        assertEquals(2, agg.slidingTotal("u1").count());
+    }
+
+    @Test
+    void testSlidingWindowForgetsOldPanes() {
+        WindowedAggregator agg = aggregator(100);
+        agg.add("u1", 10.0);
+        clock.advance(Duration.ofMinutes(6));
+        agg.tick();
+        agg.add("u1", 1.0);
+        assertEquals(1.0, agg.slidingTotal("u1").total(), 1e-9);
+    }
+
+    @Test
+    void testTumblingWindowClosesOnWatermark() {
+        WindowedAggregator agg = aggregator(100);
+        agg.add("u1", 10.0);
+        agg.add("u2", 20.0);
+        // The watermark trails the clock by the 5s lateness: at 64s it is still before the 60s window end
+        clock.advance(Duration.ofSeconds(64));
+        agg.tick();
+        int openBeforeWatermark = agg.openWindowCount();
+
+        clock.advance(Duration.ofSeconds(2));
+        agg.tick();
+        assertEquals(openBeforeWatermark - 1, agg.openWindowCount(), "the tumbling window is closed");
+
+        List<WindowSummary> windows = agg.tumblingWindows(10);
+        assertEquals(1, windows.size());
+        WindowSummary closed = windows.get(0);
+        assertEquals(2, closed.count());
+        assertEquals(30.0, closed.total(), 1e-9);
+        assertEquals(2, closed.distinctUsers());
+        assertEquals("u2", closed.topUsers().get(0).userId());
+    }
+
+    @Test
+    void testLateEventsForClosedWindowsAreDropped() {
+        WindowedAggregator agg = aggregator(100);
+        long start = clock.millis();
+        clock.advance(Duration.ofMinutes(2));
+        agg.tick();
+        agg.add("u1", 10.0, start);
+        assertEquals(1.0, registry.get("tpdlq_aggregation_late_total").counter().count());
+    }
+
+    @Test
+    void testKeysAreCappedIntoOverflowBucket() {
+        WindowedAggregator agg = aggregator(2);
+        agg.add("u1", 1.0);
+        agg.add("u2", 1.0);
+        agg.add("u3", 1.0);
+        agg.add("u4", 1.0);
+        assertEquals(2.0, agg.slidingTotal(KeyedTotals.OVERFLOW_KEY).total(), 1e-9);
+    }
+}